@@ -0,0 +1,54 @@
+package edu.tamu.tcat.visualpage.wcsa;
+
+import java.util.Locale;
+
+/**
+ * Controls which debug images are rendered while pages are analyzed. Each level includes
+ * the output of all lower levels. Rendering is skipped entirely, not merely discarded,
+ * for output above the configured level.
+ */
+public enum DiagnosticLevel
+{
+   /** No debug images are rendered. */
+   OFF,
+
+   /** Renders the final results of each page, such as the text and image components. */
+   OUTPUT,
+
+   /** Also renders the text found at each threshold of each Hough transform pass. */
+   INTERMEDIATE,
+
+   /** Also renders each text string and Hough cluster. May produce hundreds of images per page. */
+   ALL;
+
+   /**
+    * @param level The level to test.
+    * @return {@code true} if output for the supplied level should be rendered when this
+    *       level is configured.
+    */
+   public boolean includes(DiagnosticLevel level)
+   {
+      return compareTo(level) >= 0;
+   }
+
+   /**
+    * @param value The name of a level, ignoring case. May be {@code null} or empty.
+    * @param defaultLevel The level to return if no value is supplied.
+    * @return The named level.
+    * @throws IllegalArgumentException If the supplied value does not name a level.
+    */
+   public static DiagnosticLevel parse(String value, DiagnosticLevel defaultLevel)
+   {
+      if (value == null || value.trim().isEmpty())
+         return defaultLevel;
+
+      try
+      {
+         return valueOf(value.trim().toUpperCase(Locale.ROOT));
+      }
+      catch (IllegalArgumentException ex)
+      {
+         throw new IllegalArgumentException("Unknown diagnostic level [" + value + "]. Expected one of OFF, OUTPUT, INTERMEDIATE or ALL.", ex);
+      }
+   }
+}
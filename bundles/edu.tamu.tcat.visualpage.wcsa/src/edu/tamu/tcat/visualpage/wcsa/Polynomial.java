@@ -1,18 +1,24 @@
 package edu.tamu.tcat.visualpage.wcsa;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.DoubleUnaryOperator;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import org.apache.commons.math3.fitting.PolynomialCurveFitter;
-import org.apache.commons.math3.fitting.WeightedObservedPoint;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
 
 import edu.tamu.tcat.visualpage.wcsa.Polynomial.CriticalPoint.Type;
 
 public class Polynomial implements DoubleUnaryOperator
 {
+   /** Cached pseudo-inverses for {@link #fit(double[], int)}, keyed by length and degree. */
+   private static final Map<Long, double[]> pseudoInverses = new ConcurrentHashMap<>();
+   
    private final double[] coeffs;
    private final int degree;
    
@@ -48,13 +54,25 @@ public class Polynomial implements DoubleUnaryOperator
    @Override
    public double applyAsDouble(double operand)
    {
-      double result = 0;
-      for (int i = 0; i <= degree; i++)
+      return evaluate(coeffs, degree, operand);
+   }
+   
+   /**
+    * Evaluates this polynomial at each of the supplied values.
+    * 
+    * @param xs The values at which to evaluate this polynomial.
+    * @param out The array to which the results are written. Must be at least as long as 
+    *       {@code xs}. May be the same array as {@code xs}.
+    */
+   public void evaluate(double[] xs, double[] out)
+   {
+      if (out.length < xs.length)
+         throw new IllegalArgumentException("The output array [" + out.length + "] must be at least as long as the input array [" + xs.length + "].");
+      
+      for (int i = 0; i < xs.length; i++)
       {
-         result += coeffs[i] * Math.pow(operand, i);
+         out[i] = evaluate(coeffs, degree, xs[i]);
       }
-      
-      return result;
    }
    
    public Polynomial differentiate()
@@ -71,49 +89,233 @@ public class Polynomial implements DoubleUnaryOperator
       return new Polynomial(vals);
    }
    
+   /**
+    * @deprecated Critical points are now located exactly; use 
+    *       {@link #findCriticalPoints(double, double)}. The step is ignored.
+    */
+   @Deprecated
    public List<Polynomial.CriticalPoint> findCriticalPoints(double a, double b, double step)
+   {
+      return findCriticalPoints(a, b);
+   }
+   
+   /**
+    * Finds the local minima and maxima of this polynomial within the open interval 
+    * {@code (a, b)}. Critical points are located by finding the real roots of the 
+    * derivative to within floating point precision, rather than by sampling.
+    * 
+    * @param a The start of the interval.
+    * @param b The end of the interval.
+    * @return The critical points, ordered by increasing {@code x}.
+    */
+   public List<Polynomial.CriticalPoint> findCriticalPoints(double a, double b)
    {
       Polynomial diff = differentiate();
+      double[] roots = findRoots(diff.coeffs, a, b);
+      
       List<Polynomial.CriticalPoint> points = new ArrayList<>();
-      double prev = diff.applyAsDouble(a);
-      for (double x = a + step; x < b; x += step)
+      for (int i = 0; i < roots.length; i++)
       {
-         double y = diff.applyAsDouble(x);
-         if (prev < 0 && y > 0) {
+         // the derivative has no roots between adjacent roots, so its sign may be sampled 
+         // half way to the neighboring roots
+         double left = diff.applyAsDouble((i == 0 ? a : roots[i - 1]) / 2 + roots[i] / 2);
+         double right = diff.applyAsDouble(roots[i] / 2 + (i == roots.length - 1 ? b : roots[i + 1]) / 2);
+         if (left < 0 && right > 0) {
             // decreasing -> increasing :: minimum
-            points.add(new CriticalPoint(Type.MINIMUM, x));
-         } else if (prev > 0 && y < 0) {
+            points.add(new CriticalPoint(Type.MINIMUM, roots[i]));
+         } else if (left > 0 && right < 0) {
             // increasing -> decreasing :: maximum
-            points.add(new CriticalPoint(Type.MAXIMUM, x));
+            points.add(new CriticalPoint(Type.MAXIMUM, roots[i]));
          } else {
-            // TODO: check for saddle points (i.e. derivative is tangent to x-axis)
+            // TODO: report saddle points (i.e. derivative is tangent to x-axis)
          }
-         
-         prev = y;
       }
       
       return points;
    }
+   
+   /**
+    * Finds the distinct real roots of a polynomial within the open interval {@code (a, b)}.
+    * 
+    * <p>
+    * The roots of the derivative, found recursively, split the interval into pieces on 
+    * which the polynomial is monotonic. Each piece contains at most one root, which is 
+    * located by bisection if the polynomial changes sign over the piece.
+    * 
+    * @return The roots in increasing order.
+    */
+   private static double[] findRoots(double[] c, double a, double b)
+   {
+      int deg = c.length - 1;
+      while (deg > 0 && c[deg] == 0)
+         deg--;
+      
+      if (deg == 0 || !(a < b))
+         return new double[0];
+      
+      if (deg == 1)
+      {
+         double root = -c[0] / c[1];
+         return (root > a && root < b) ? new double[] { root } : new double[0];
+      }
+      
+      double[] diff = new double[deg];
+      for (int i = 1; i <= deg; i++)
+      {
+         diff[i - 1] = i * c[i];
+      }
+      
+      double[] turns = findRoots(diff, a, b);
+      double[] roots = new double[turns.length + 1];
+      int n = 0;
+      double lo = a;
+      double fLo = evaluate(c, deg, a);
+      for (int i = 0; i <= turns.length; i++)
+      {
+         double hi = (i < turns.length) ? turns[i] : b;
+         double fHi = evaluate(c, deg, hi);
+         if (fHi == 0 && i < turns.length)
+            roots[n++] = hi;       // a repeated root at a turning point
+         else if ((fLo < 0 && fHi > 0) || (fLo > 0 && fHi < 0))
+            roots[n++] = bisect(c, deg, lo, hi, fLo);
+         
+         lo = hi;
+         fLo = fHi;
+      }
+      
+      return Arrays.copyOf(roots, n);
+   }
+   
+   /**
+    * Locates the root of a polynomial that changes sign over {@code [lo, hi]} by bisection,
+    * stopping once the interval can no longer be divided.
+    */
+   private static double bisect(double[] c, int deg, double lo, double hi, double fLo)
+   {
+      boolean rising = fLo < 0;
+      while (true)
+      {
+         double mid = lo / 2 + hi / 2;
+         if (mid <= lo || mid >= hi)
+            return mid;
+         
+         double fMid = evaluate(c, deg, mid);
+         if (fMid == 0)
+            return mid;
+         
+         if ((fMid < 0) == rising)
+            lo = mid;
+         else
+            hi = mid;
+      }
+   }
+   
+   /**
+    * Evaluates a polynomial using Horner's method.
+    */
+   private static double evaluate(double[] c, int deg, double x)
+   {
+      double result = c[deg];
+      for (int i = deg - 1; i >= 0; i--)
+      {
+         result = result * x + c[i];
+      }
+      
+      return result;
+   }
 
    
    /**
-    * Fits an {@code n} degree polynomial to the supplied values. Uses LMS.
+    * Fits an {@code n} degree polynomial to the supplied values by linear least squares.
+    * 
+    * <p>
+    * Since the domain is fixed, the pseudo-inverse of the design matrix depends only on 
+    * the number of values and the degree. It is computed once for each combination and 
+    * cached, so that each fit is a single matrix-vector product.
     * 
     * @param values The values to be fit. Assumes an integer valued domain over 
     *       {@code [0, values.length)}.
     *        
-    * @param n The degree of polynomial to be fit.
-    * @return
+    * @param n The degree of polynomial to be fit. Must be less than the number of values.
+    * @return The fitted polynomial.
     */
    public static Polynomial fit(double[] values, int n)
    {
-      PolynomialCurveFitter fitter = PolynomialCurveFitter.create(5);
-      double[] fit = fitter.fit(IntStream.range(0, values.length)
-                                         .mapToObj(i -> new WeightedObservedPoint(1, i, values[i]))
-                                         .collect(Collectors.toList()));
+      double[] pinv = getPseudoInverse(values.length, n);
+      double[] fit = new double[n + 1];
+      int len = values.length;
+      for (int k = 0, row = 0; k <= n; k++, row += len)
+      {
+         double sum = 0;
+         for (int i = 0; i < len; i++)
+         {
+            sum += pinv[row + i] * values[i];
+         }
+         
+         fit[k] = sum;
+      }
+      
       return new Polynomial(fit);
    }
    
+   /**
+    * @return The pseudo-inverse of the design matrix for fitting an {@code n} degree 
+    *       polynomial over the domain {@code [0, len)}, stored row major with one row per 
+    *       coefficient.
+    */
+   private static double[] getPseudoInverse(int len, int n)
+   {
+      if (n < 0)
+         throw new IllegalArgumentException("Degree [" + n + "] must not be negative.");
+      if (len <= n)
+         throw new IllegalArgumentException("At least [" + (n + 1) + "] values are required to fit a polynomial of degree [" + n + "]. Found [" + len + "].");
+      
+      Long key = Long.valueOf(((long)len << 32) | n);
+      return pseudoInverses.computeIfAbsent(key, k -> computePseudoInverse(len, n));
+   }
+   
+   private static double[] computePseudoInverse(int len, int n)
+   {
+      // The design matrix over [0, len) is badly conditioned for even moderate degrees, so
+      // solve over the domain mapped to [-1, 1] and then change basis back to powers of x.
+      double mid = (len - 1) / 2.0;
+      double half = Math.max(mid, 1);
+      RealMatrix design = MatrixUtils.createRealMatrix(len, n + 1);
+      for (int i = 0; i < len; i++)
+      {
+         double u = (i - mid) / half;
+         double term = 1;
+         for (int j = 0; j <= n; j++)
+         {
+            design.setEntry(i, j, term);
+            term *= u;
+         }
+      }
+      
+      RealMatrix scaledPinv = new QRDecomposition(design).getSolver().getInverse();
+      
+      // ((x - mid) / half)^j = sum_k C(j, k) (-mid)^(j - k) x^k / half^j
+      RealMatrix basis = MatrixUtils.createRealMatrix(n + 1, n + 1);
+      for (int j = 0; j <= n; j++)
+      {
+         double binomial = 1;
+         for (int k = j; k >= 0; k--)
+         {
+            basis.setEntry(k, j, binomial * Math.pow(-mid, j - k) / Math.pow(half, j));
+            binomial = binomial * k / (j - k + 1);
+         }
+      }
+      
+      RealMatrix pinv = basis.multiply(scaledPinv);
+      double[] result = new double[(n + 1) * len];
+      for (int k = 0; k <= n; k++)
+      {
+         System.arraycopy(pinv.getRow(k), 0, result, k * len, len);
+      }
+      
+      return result;
+   }
+   
    /**
     * Computes the mean squared error for given polynomial and a set of observed values.
     * 
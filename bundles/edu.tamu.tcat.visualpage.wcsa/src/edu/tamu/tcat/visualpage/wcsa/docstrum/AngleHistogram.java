@@ -5,7 +5,6 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 
@@ -47,7 +46,7 @@ class AngleHistogram
       }
       
       // calculate orientation
-      List<CriticalPoint> points = fitHistogram.findCriticalPoints(0, histogram.length, 1);
+      List<CriticalPoint> points = fitHistogram.findCriticalPoints(0, histogram.length);
       if (points.size() < 3)
       {
          valid = false;
@@ -79,22 +78,22 @@ class AngleHistogram
     * Estimates whether the supplied angle is within the normal  within-line rotation 
     * of this histogram.
     * 
-    * @param theta
+    * @param angle The angle between two adjacent components, in the range {@code [-PI, PI]}.
     * @return
     */
-   public boolean isWithinLine(ComponentNeighbors.AdjacentCC adj)
+   public boolean isWithinLine(double angle)
    {
       double tolerance = Math.PI / 10;
-      double theta = toNormalizedAngle(adj);
+      double theta = toNormalizedAngle(angle);
       return theta > (orientation - tolerance) && theta < (orientation + tolerance);
    }
    
-   public boolean isBetweenLine(ComponentNeighbors.AdjacentCC adj)
+   public boolean isBetweenLine(double angle)
    {
       double perpendicular = orientation + halfPi;
       double tolerance = Math.PI / 10;
 
-      double theta = toNormalizedAngle(adj);
+      double theta = toNormalizedAngle(angle);
       if (theta < orientation)
          theta += Math.PI;
       
@@ -113,14 +112,21 @@ class AngleHistogram
       g.setColor(Color.black);
       int barWidth = width / histogram.length;
       
-      for (Polynomial.CriticalPoint cp : fitHistogram.findCriticalPoints(0, 360, 1))
+      for (Polynomial.CriticalPoint cp : fitHistogram.findCriticalPoints(0, 360))
       {
          g.drawLine((int)cp.point, 0, (int)cp.point, height);
       }
       
+      double[] fitted = new double[histogram.length];
+      for (int x = 0; x < fitted.length; x++)
+      {
+         fitted[x] = x;
+      }
+      fitHistogram.evaluate(fitted, fitted);
+      
       for (int x = 1; x < histogram.length; x++)
       {
-         double y = fitHistogram.applyAsDouble(x);
+         double y = fitted[x];
          
          int a = (int)(y * height * 20);
          int barHeight = Math.min(a, height);      // HACK: scale by 20 for better display
@@ -133,13 +139,14 @@ class AngleHistogram
       return image;
    }
 
-   public static AngleHistogram create(Set<ComponentNeighbors> adjTable) 
+   public static AngleHistogram create(NeighborTable adjTable) 
    {
       // map theta from -PI to PI to - PI / 2 to PI / 2 
-      double[] angles = adjTable.parallelStream()
-                           .flatMap(neighbors -> neighbors.neighbors.stream())
-                           .mapToDouble(AngleHistogram::toNormalizedAngle)
-                           .toArray();
+      double[] angles = new double[adjTable.size];
+      for (int i = 0; i < angles.length; i++)
+      {
+         angles[i] = toNormalizedAngle(adjTable.theta[i]);
+      }
       
       double[] h = computeAngleHistogram(angles, 360);          // HACK: hard coded 180 deg. at .5 degree resolution
       
@@ -152,14 +159,14 @@ class AngleHistogram
     * Maps the angle between two adjacent connected components from {@code [-PI, PI]} to 
     * {@code [-PI/2, PI/2]}.
     * 
-    * @param adj The adjacent components.
+    * @param theta The angle between the adjacent components.
     * @return The mapped angle.
     */
-   private static double toNormalizedAngle(ComponentNeighbors.AdjacentCC adj)
+   private static double toNormalizedAngle(double theta)
    {
-      return (adj.theta > halfPi) ? adj.theta - Math.PI 
-                              : (adj.theta < -halfPi) ? adj.theta + Math.PI 
-                              : adj.theta;
+      return (theta > halfPi) ? theta - Math.PI 
+                              : (theta < -halfPi) ? theta + Math.PI 
+                              : theta;
    }
    
    private static double[] smoothAndNormalize(int[] histogram, double alpha, int numElements)
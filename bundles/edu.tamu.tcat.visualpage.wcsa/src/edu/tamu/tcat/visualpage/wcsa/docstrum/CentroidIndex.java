@@ -0,0 +1,219 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+
+/**
+ * A two dimensional k-d tree over the centroids of the connected components on a page.
+ * Intended to be built once per page and then queried for the nearest neighbors of each
+ * component. Instances are immutable and may be queried concurrently.
+ *
+ * <p>
+ * The tree is stored implicitly: components are permuted so that the median of each
+ * sub-range (along the axis for that depth) is at the center of the range. Centroids are
+ * compared using integer squared distances, so no square roots are computed during search.
+ *
+ * @see http://en.wikipedia.org/wiki/K-d_tree
+ */
+public class CentroidIndex
+{
+   private final ConnectedComponent[] components;
+   private final int[] xs;
+   private final int[] ys;
+
+   private CentroidIndex(ConnectedComponent[] components)
+   {
+      int sz = components.length;
+      this.components = components;
+      this.xs = new int[sz];
+      this.ys = new int[sz];
+      for (int i = 0; i < sz; i++)
+      {
+         Point centroid = components[i].getCentroid();
+         xs[i] = centroid.getX();
+         ys[i] = centroid.getY();
+      }
+
+      build(0, sz, 0);
+   }
+
+   /**
+    * Builds an index over the centroids of the supplied components.
+    *
+    * @param components The components to index.
+    * @return The constructed index.
+    */
+   public static CentroidIndex create(Collection<ConnectedComponent> components)
+   {
+      return new CentroidIndex(components.toArray(new ConnectedComponent[components.size()]));
+   }
+
+   /**
+    * @return The number of indexed components.
+    */
+   public int size()
+   {
+      return components.length;
+   }
+
+   /**
+    * Finds the components whose centroids are nearest to the centroid of a reference
+    * component.
+    *
+    * <p>
+    * Components whose centroid coincides with that of the reference are excluded. Where
+    * several components are at exactly the same distance from the reference, only one of
+    * them is returned. This matches the semantics of the distance-ordered set that was
+    * previously used to find neighbors.
+    *
+    * @param ref The reference component.
+    * @param k The maximum number of neighbors to return.
+    * @return The nearest components, ordered by increasing distance. Will contain fewer
+    *       than {@code k} elements if there are not enough distinct distances.
+    */
+   public ConnectedComponent[] findNearest(ConnectedComponent ref, int k)
+   {
+      if (k <= 0)
+         return new ConnectedComponent[0];
+
+      Point p = ref.getCentroid();
+      Neighborhood hood = new Neighborhood(k);
+      search(0, components.length, 0, p.getX(), p.getY(), hood);
+
+      ConnectedComponent[] result = new ConnectedComponent[hood.count];
+      for (int i = 0; i < hood.count; i++)
+      {
+         result[i] = components[hood.indices[i]];
+      }
+
+      return result;
+   }
+
+   private void search(int lo, int hi, int depth, int x, int y, Neighborhood hood)
+   {
+      if (lo >= hi)
+         return;
+
+      int mid = (lo + hi) >>> 1;
+      long dx = xs[mid] - x;
+      long dy = ys[mid] - y;
+      hood.offer(mid, dx * dx + dy * dy);
+
+      long diff = (depth % 2 == 0) ? x - xs[mid] : y - ys[mid];
+      if (diff < 0)
+      {
+         search(lo, mid, depth + 1, x, y, hood);
+         if (hood.accepts(diff * diff))
+            search(mid + 1, hi, depth + 1, x, y, hood);
+      }
+      else
+      {
+         search(mid + 1, hi, depth + 1, x, y, hood);
+         if (hood.accepts(diff * diff))
+            search(lo, mid, depth + 1, x, y, hood);
+      }
+   }
+
+   private void build(int lo, int hi, int depth)
+   {
+      if (hi - lo <= 1)
+         return;
+
+      int mid = (lo + hi) >>> 1;
+      select(lo, hi - 1, mid, depth % 2 == 0 ? xs : ys);
+      build(lo, mid, depth + 1);
+      build(mid + 1, hi, depth + 1);
+   }
+
+   /**
+    * Partially sorts the range {@code [lo, hi]} along the supplied axis such that the
+    * element at index {@code n} is in its sorted position (quickselect).
+    */
+   private void select(int lo, int hi, int n, int[] axis)
+   {
+      while (hi > lo)
+      {
+         int pivot = axis[(lo + hi) >>> 1];
+         int i = lo;
+         int j = hi;
+         while (i <= j)
+         {
+            while (axis[i] < pivot)
+               i++;
+            while (axis[j] > pivot)
+               j--;
+            if (i <= j)
+               swap(i++, j--);
+         }
+
+         if (n <= j)
+            hi = j;
+         else if (n >= i)
+            lo = i;
+         else
+            return;
+      }
+   }
+
+   private void swap(int a, int b)
+   {
+      ConnectedComponent cc = components[a];
+      components[a] = components[b];
+      components[b] = cc;
+
+      int tmp = xs[a];
+      xs[a] = xs[b];
+      xs[b] = tmp;
+
+      tmp = ys[a];
+      ys[a] = ys[b];
+      ys[b] = tmp;
+   }
+
+   /**
+    * A bounded, sorted collection of the nearest candidates seen so far.
+    */
+   private static class Neighborhood
+   {
+      final int[] indices;
+      final long[] distances;
+      int count = 0;
+
+      Neighborhood(int k)
+      {
+         indices = new int[k];
+         distances = new long[k];
+      }
+
+      /**
+       * @return {@code true} if a candidate at the supplied squared distance could
+       *       be included in this neighborhood.
+       */
+      boolean accepts(long dist)
+      {
+         return count < indices.length || dist < distances[count - 1];
+      }
+
+      void offer(int ix, long dist)
+      {
+         if (dist == 0 || !accepts(dist))
+            return;
+
+         int pos = Arrays.binarySearch(distances, 0, count, dist);
+         if (pos >= 0)
+            return;     // keep only one component per distance
+
+         pos = -(pos + 1);
+         int last = Math.min(count, indices.length - 1);
+         System.arraycopy(distances, pos, distances, pos + 1, last - pos);
+         System.arraycopy(indices, pos, indices, pos + 1, last - pos);
+         distances[pos] = dist;
+         indices[pos] = ix;
+         if (count < indices.length)
+            count++;
+      }
+   }
+}
@@ -0,0 +1,120 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A disjoint-set forest over the dense range of elements {@code [0, size)} that may be
+ * updated concurrently by many threads without locking.
+ *
+ * <p>
+ * Parent links are held in an {@link AtomicIntegerArray}. Two sets are joined by a single
+ * compare-and-set that links the root with the larger index beneath the root with the
+ * smaller index; if another thread changed either root first, the union is retried.
+ * Since links always point to smaller indices, no cycles can form, and the root of each
+ * set is always its smallest element. Lookups shorten paths by halving, also using
+ * compare-and-set, so concurrent lookups never undo each other's work.
+ *
+ * <p>
+ * The sets that result from a group of unions do not depend on the order in which they
+ * are applied, so the outcome is identical to that of {@link DenseUnionFind}.
+ */
+public class ConcurrentUnionFind
+{
+   private final AtomicIntegerArray parent;
+
+   /**
+    * Creates a forest in which each element is in a set of its own.
+    *
+    * @param size The number of elements. Must not be negative.
+    */
+   public ConcurrentUnionFind(int size)
+   {
+      if (size < 0)
+         throw new IllegalArgumentException("Size [" + size + "] must not be negative.");
+
+      parent = new AtomicIntegerArray(size);
+      for (int i = 0; i < size; i++)
+      {
+         parent.lazySet(i, i);
+      }
+   }
+
+   /**
+    * @return The number of elements.
+    */
+   public int size()
+   {
+      return parent.length();
+   }
+
+   /**
+    * @param x An element.
+    * @return The root of the set containing the element at the time of the call. This is
+    *       the smallest element of the set.
+    */
+   public int find(int x)
+   {
+      while (true)
+      {
+         int p = parent.get(x);
+         if (p == x)
+            return x;
+
+         // path halving: point x at its grandparent, then continue from there
+         int gp = parent.get(p);
+         if (p != gp)
+            parent.compareAndSet(x, p, gp);
+
+         x = gp;
+      }
+   }
+
+   /**
+    * Joins the sets containing two elements. May be called concurrently.
+    *
+    * @return {@code true} if the elements were in different sets.
+    */
+   public boolean union(int a, int b)
+   {
+      while (true)
+      {
+         int rootA = find(a);
+         int rootB = find(b);
+         if (rootA == rootB)
+            return false;
+
+         int hi = Math.max(rootA, rootB);
+         int lo = Math.min(rootA, rootB);
+         if (parent.compareAndSet(hi, hi, lo))
+            return true;
+
+         // hi was linked elsewhere by another thread; retry from its new root
+      }
+   }
+
+   /**
+    * Numbers the sets consecutively, in order of the smallest element of each set. Must
+    * not be called while unions are in progress.
+    *
+    * @param labels The array to which the number of the set containing each element is
+    *       written. Must be at least {@link #size()} long.
+    * @return The number of sets.
+    */
+   public int label(int[] labels)
+   {
+      int size = parent.length();
+      if (labels.length < size)
+         throw new IllegalArgumentException("Label array [" + labels.length + "] must be at least as long as the number of elements [" + size + "].");
+
+      // each root is the smallest element of its set, so it is labeled before any other
+      // element of the set
+      int count = 0;
+      for (int i = 0; i < size; i++)
+      {
+         int root = find(i);
+         labels[i] = (root == i) ? count++ : labels[root];
+      }
+
+      return count;
+   }
+}
@@ -0,0 +1,120 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over the dense range of elements {@code [0, size)}, stored in
+ * primitive arrays. Uses union by rank and path compression, so that any sequence of
+ * operations runs in effectively linear time.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+public class DenseUnionFind
+{
+   private final int[] parent;
+   private final byte[] rank;
+
+   /**
+    * Creates a forest in which each element is in a set of its own.
+    *
+    * @param size The number of elements. Must not be negative.
+    */
+   public DenseUnionFind(int size)
+   {
+      if (size < 0)
+         throw new IllegalArgumentException("Size [" + size + "] must not be negative.");
+
+      parent = new int[size];
+      rank = new byte[size];
+      for (int i = 0; i < size; i++)
+      {
+         parent[i] = i;
+      }
+   }
+
+   /**
+    * @return The number of elements.
+    */
+   public int size()
+   {
+      return parent.length;
+   }
+
+   /**
+    * @param x An element.
+    * @return The root of the set containing the element.
+    */
+   public int find(int x)
+   {
+      int root = x;
+      while (parent[root] != root)
+      {
+         root = parent[root];
+      }
+
+      // compress the path so that later lookups go directly to the root
+      while (parent[x] != root)
+      {
+         int next = parent[x];
+         parent[x] = root;
+         x = next;
+      }
+
+      return root;
+   }
+
+   /**
+    * Joins the sets containing two elements.
+    *
+    * @return The root of the joined set.
+    */
+   public int union(int a, int b)
+   {
+      int rootA = find(a);
+      int rootB = find(b);
+      if (rootA == rootB)
+         return rootA;
+
+      if (rank[rootA] < rank[rootB])
+      {
+         parent[rootA] = rootB;
+         return rootB;
+      }
+
+      parent[rootB] = rootA;
+      if (rank[rootA] == rank[rootB])
+         rank[rootA]++;
+
+      return rootA;
+   }
+
+   /**
+    * Numbers the sets consecutively, in order of the smallest element of each set.
+    *
+    * @param labels The array to which the number of the set containing each element is
+    *       written. Must be at least {@link #size()} long.
+    * @return The number of sets.
+    */
+   public int label(int[] labels)
+   {
+      int size = parent.length;
+      if (labels.length < size)
+         throw new IllegalArgumentException("Label array [" + labels.length + "] must be at least as long as the number of elements [" + size + "].");
+
+      // the slot of each root holds the label of its set, which is also the label of the
+      // root itself, so it may safely be written before the root is reached
+      Arrays.fill(labels, 0, size, -1);
+      int count = 0;
+      for (int i = 0; i < size; i++)
+      {
+         int root = find(i);
+         if (labels[root] < 0)
+            labels[root] = count++;
+
+         labels[i] = labels[root];
+      }
+
+      return count;
+   }
+}
@@ -11,42 +11,48 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.DoubleSummaryStatistics;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 
-import javax.imageio.ImageIO;
-
-import edu.tamu.tcat.analytics.image.integral.IntegralImage;
-import edu.tamu.tcat.analytics.image.integral.IntegralImageImpl;
 import edu.tamu.tcat.analytics.image.region.BoundingBox;
 import edu.tamu.tcat.analytics.image.region.Point;
 import edu.tamu.tcat.dia.binarization.BinarizationException;
-import edu.tamu.tcat.dia.binarization.BinaryImage;
-import edu.tamu.tcat.dia.binarization.sauvola.FastSauvola;
 import edu.tamu.tcat.dia.opencv.pageseg.SimpleImageSegmenter;
-import edu.tamu.tcat.dia.segmentation.cc.ConnectComponentSet;
 import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
 import edu.tamu.tcat.dia.segmentation.cc.twopass.CCWriter;
-import edu.tamu.tcat.dia.segmentation.cc.twopass.ConnectedComponentFinder;
-import edu.tamu.tcat.dia.segmentation.cc.twopass.UnionFind;
 import edu.tamu.tcat.osgi.config.ConfigurationProperties;
 import edu.tamu.tcat.osgi.services.util.ServiceHelper;
+import edu.tamu.tcat.visualpage.wcsa.DiagnosticLevel;
 import edu.tamu.tcat.visualpage.wcsa.Polynomial;
-import edu.tamu.tcat.visualpage.wcsa.docstrum.ComponentNeighbors.AdjacentCC;
 import edu.tamu.tcat.visualpage.wcsa.fletcher.FletcherGraphicsSegmentation;
+import edu.tamu.tcat.visualpage.wcsa.importer.AsyncImageWriter;
 import edu.tamu.tcat.visualpage.wcsa.importer.DirectoryImporter;
+import edu.tamu.tcat.visualpage.wcsa.importer.GrayscaleImageLoader;
+import edu.tamu.tcat.visualpage.wcsa.importer.ImageLoader;
+import edu.tamu.tcat.visualpage.wcsa.importer.ImagePrefetcher;
 import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
 import edu.tamu.tcat.visualpage.wcsa.internal.Activator;
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsReporter;
+import edu.tamu.tcat.visualpage.wcsa.pipeline.PagePipeline;
+import edu.tamu.tcat.visualpage.wcsa.pipeline.ProgressJournal;
+import edu.tamu.tcat.visualpage.wcsa.pipeline.RunProgress;
+import edu.tamu.tcat.visualpage.wcsa.pipeline.WorkCoordinator;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.ComponentCache;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.ComponentExtractor;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.ComponentSetFormat;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.RunLengthComponent;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.SauvolaComponentExtractor;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.TwoPassComponentExtractor;
 
 /**
  *  Placeholder class to test algorithm implementation. 
@@ -56,63 +62,104 @@ public class Docstrum
    private static final String ITEM_DIR_PARAM = "datatrax.importer.item.dir";
    private static final String BASE_DIR_PARAM = "datatrax.importer.base.dir";
    private static final String OUTPUT_DIR_PARAM = "datatrax.importer.output.dir";
+   private static final String WORKERS_PARAM = "datatrax.pipeline.workers";
+   private static final String MAX_IN_FLIGHT_PARAM = "datatrax.pipeline.maxInFlight";
+   private static final String PREFETCH_PAGES_PARAM = "datatrax.importer.prefetch.pages";
+   private static final String PREFETCH_BUDGET_PARAM = "datatrax.importer.prefetch.budgetMB";
+   private static final String PREFETCH_THREADS_PARAM = "datatrax.importer.prefetch.threads";
+   private static final String GRAYSCALE_PARAM = "datatrax.importer.image.grayscale";
+   private static final String SUBSAMPLING_PARAM = "datatrax.importer.image.subsampling";
+   private static final String METRICS_INTERVAL_PARAM = "datatrax.metrics.interval";
+   private static final String METRICS_SNAPSHOT_PARAM = "datatrax.metrics.snapshot";
+   private static final String FUSED_EXTRACTOR_PARAM = "datatrax.segmentation.fused";
+   private static final String CACHE_DIR_PARAM = "datatrax.cache.dir";
+   private static final String CACHE_SIZE_PARAM = "datatrax.cache.maxMB";
+   private static final String WRITER_THREADS_PARAM = "datatrax.output.writer.threads";
+   private static final String WRITER_QUEUE_PARAM = "datatrax.output.writer.queue";
+   private static final String COMPONENTS_OUTPUT_PARAM = "datatrax.output.components";
+   private static final String DIAGNOSTICS_PARAM = "datatrax.diagnostics.level";
+   private static final String JOURNAL_PARAM = "datatrax.run.journal";
+   private static final String JOURNAL_BATCH_PARAM = "datatrax.run.journal.batch";
+   private static final String SHARD_COUNT_PARAM = "datatrax.run.shard.count";
+   private static final String SHARD_INDEX_PARAM = "datatrax.run.shard.index";
+   private static final String COORDINATOR_DIR_PARAM = "datatrax.run.coordinator.dir";
+   private static final String LEASE_PARAM = "datatrax.run.coordinator.leaseSeconds";
+   
+   // minimum number of neighbor pairs for which lines are grouped in parallel
+   private static final int PARALLEL_GROUPING_THRESHOLD = 1 << 14;
    
-   private final FastSauvola binarizer;
+   private final TwoPassComponentExtractor twoPassExtractor;
+   private final SauvolaComponentExtractor extractor;
+   private boolean fused = false;      // use the streaming extractor rather than the two-pass chain
+   private ComponentCache cache;       // null if components are not cached
+   private boolean writeComponents = false;
+   private String decoding = "default";
+   private int subsampling = 1;
+   private DiagnosticLevel diagnostics = DiagnosticLevel.OFF;
    int minComponentSize = 128; // TODO: allow this to be set by callers (8x16 px)
 
    public Docstrum()
    {
-      binarizer = new FastSauvola();
+      twoPassExtractor = new TwoPassComponentExtractor();
+      extractor = new SauvolaComponentExtractor();
    }
    
    
    public void execute()
    {
-      AtomicInteger processingTime = new AtomicInteger();
+      MetricsRegistry metrics = MetricsRegistry.getDefault();
       AtomicInteger ct = new AtomicInteger();
       long startTime = System.currentTimeMillis();
       try (ServiceHelper helper = new ServiceHelper(Activator.getDefault().getContext()))
       {
          ConfigurationProperties properties = helper.waitForService(ConfigurationProperties.class, 10_000);
          DirectoryImporter importer = getImporter(properties);
-         Set<ImageProxy> images = importer.getProxies().parallelStream()
-                                           .sorted((a, b) -> a.getFilename().compareTo(b.getFilename()))
-                                           .collect(Collectors.toSet());
+         configureExtraction(properties);
+         diagnostics = DiagnosticLevel.parse(properties.getPropertyValue(DIAGNOSTICS_PARAM, String.class), DiagnosticLevel.OFF);
+         writeComponents = Boolean.parseBoolean(properties.getPropertyValue(COMPONENTS_OUTPUT_PARAM, String.class));
+
+         int reportInterval = getIntProperty(properties, METRICS_INTERVAL_PARAM, 30);
+         String snapshotFile = properties.getPropertyValue(METRICS_SNAPSHOT_PARAM, String.class);
+         Path snapshot = (snapshotFile == null || snapshotFile.trim().isEmpty())
+               ? Paths.get(properties.getPropertyValue(OUTPUT_DIR_PARAM, String.class)).resolve("metrics.json")
+               : Paths.get(snapshotFile.trim());
 
-         String fmt = "jpg";
-         for (ImageProxy p : images)
+         int numWorkers = getIntProperty(properties, WORKERS_PARAM, Runtime.getRuntime().availableProcessors());
+         int maxInFlight = getIntProperty(properties, MAX_IN_FLIGHT_PARAM, 2 * numWorkers);
+         int prefetchPages = getIntProperty(properties, PREFETCH_PAGES_PARAM, numWorkers);
+         long prefetchBytes = getIntProperty(properties, PREFETCH_BUDGET_PARAM, 1024) * 1024L * 1024L;
+         int decoders = getIntProperty(properties, PREFETCH_THREADS_PARAM, 2);
+         int encoders = getIntProperty(properties, WRITER_THREADS_PARAM, 2);
+         int maxPendingWrites = getIntProperty(properties, WRITER_QUEUE_PARAM, 4 * encoders);
+         
+         // the writer, journal and coordinator are closed after the pipeline, so that all 
+         // queued output is written and all completed pages and items are recorded
+         try (MetricsReporter reporter = new MetricsReporter(metrics, reportInterval, snapshot);
+              ProgressJournal journal = openJournal(properties);
+              WorkCoordinator coordinator = openCoordinator(properties);
+              AsyncImageWriter writer = new AsyncImageWriter(encoders, maxPendingWrites))
          {
-            try 
+            importer.setImageWriter(writer);
+            if (journal != null)
+               System.out.println("Resuming from journal [" + journal.getFile() + "]: " + journal.getCompletedCount() + " pages completed.");
+            
+            RunProgress progress = new RunProgress(importer, Paths.get(properties.getPropertyValue(BASE_DIR_PARAM, String.class)), journal, coordinator);
+            try (ImagePrefetcher pages = new ImagePrefetcher(progress.pages(), prefetchPages, prefetchBytes, decoders);
+                 PagePipeline<PageAnalysis> pipeline = new PagePipeline<>(new IllustrationFinder(importer, writer, "jpg"), numWorkers, maxInFlight))
             {
-               System.out.println("Analysing Image: " + p.getPath());
-               SimpleImageSegmenter segmenter = new SimpleImageSegmenter();
-               BufferedImage image = p.getImage();
-               long start = System.currentTimeMillis();
-               image.getWidth();
-               segmenter.findIllustrations(image);
-               if (segmenter.hasImages())
+               pipeline.setPageListener(progress);
+               while (pages.hasNext())
                {
-                  Path dir = importer.getOutputPath(p);
-                  if (!Files.exists(dir))
-                     Files.createDirectories(dir);
-                  
-                  Path outfile = dir.getParent().resolve(dir.getFileName().toString() + "." + fmt);
-                  ImageIO.write(image, fmt, outfile.toFile());
+                  pipeline.submit(pages.next());
                }
-   
-               long end = System.currentTimeMillis();
                
-               ct.incrementAndGet();
-               ct.getAndUpdate((i) -> (int)(i + (end - start)));
-               System.out.println("    ---------------------------");
-               System.out.println("    Elapsed Time: " + (end - start) + " ms\n");
+               progress.endOfInput();
+               pipeline.awaitCompletion();
+               ct.set(pipeline.getCompletedCount());
             }
-            catch (IOException ioe)
-            {
-               ioe.printStackTrace();
-            }
-         };
-         
+            
+            writer.flush();
+         }
       } 
       catch (Exception ex)
       {
@@ -120,45 +167,113 @@ public class Docstrum
       }
       long endTime = System.currentTimeMillis();
       
+      double avgTime = metrics.histogram(MetricsRegistry.PAGE).snapshot().getMeanMillis();
       System.out.println("    ---------------------------");
-      System.out.println(" Pages Processed: " + ct.get() + " ms\n");
+      System.out.println(" Pages Processed: " + ct.get() + "\n");
       System.out.println("    Elapsed Time: " + (endTime - startTime) + " ms\n");
-      System.out.println("    Average Time: " + (processingTime.get() / ct.get()) + " ms\n");
+      System.out.println("    Average Time: " + Math.round(avgTime) + " ms\n");
    }
    
+   /**
+    * The result of analyzing a page.
+    */
+   private static class PageAnalysis
+   {
+      final boolean hasImages;
+      final List<RunLengthComponent> components;   // null if components are not written
+
+      PageAnalysis(boolean hasImages, List<RunLengthComponent> components)
+      {
+         this.hasImages = hasImages;
+         this.components = components;
+      }
+   }
+
+   /**
+    * Writes a copy of each page that contains illustrations to the output directory. If
+    * configured, also writes the connected components of every page, in
+    * {@link ComponentSetFormat}, to a {@code .cc} file next to the page's other outputs.
+    */
+   private class IllustrationFinder implements PagePipeline.PageProcessor<PageAnalysis>
+   {
+      private final DirectoryImporter importer;
+      private final AsyncImageWriter writer;
+      private final String fmt;
+
+      IllustrationFinder(DirectoryImporter importer, AsyncImageWriter writer, String fmt)
+      {
+         this.importer = importer;
+         this.writer = writer;
+         this.fmt = fmt;
+      }
+
+      @Override
+      public PageAnalysis analyze(ImageProxy proxy, BufferedImage image) throws BinarizationException, IOException
+      {
+         System.out.println("Analysing Image: " + proxy.getPath());
+         SimpleImageSegmenter segmenter = new SimpleImageSegmenter();
+         segmenter.findIllustrations(image);
+         
+         List<RunLengthComponent> components = writeComponents ? extractComponents(proxy, () -> image) : null;
+         return new PageAnalysis(segmenter.hasImages(), components);
+      }
+
+      @Override
+      public CompletableFuture<Void> write(ImageProxy proxy, BufferedImage image, PageAnalysis result) throws IOException, InterruptedException
+      {
+         if (result.components != null)
+            writeComponents(proxy, result.components);
+         
+         if (!result.hasImages)
+            return CompletableFuture.completedFuture(null);
+         
+         // the analysis raster may be grayscale or subsampled; copies are made from the source
+         BufferedImage copy = (importer.getImageLoader() == ImageLoader.DEFAULT)
+               ? image
+               : ImageLoader.DEFAULT.load(proxy.getPath());
+         
+         Path dir = importer.getOutputPath(proxy);
+         Path outfile = dir.getParent().resolve(dir.getFileName().toString() + "." + fmt);
+         return writer.write(outfile, fmt, copy);
+      }
+
+      private void writeComponents(ImageProxy proxy, List<RunLengthComponent> components) throws IOException
+      {
+         // the output path is the page's file name up to and including its extension's dot
+         Path base = importer.getOutputPath(proxy);
+         String name = base.getFileName().toString();
+         Path outfile = base.resolveSibling(name.endsWith(".") ? name + "cc" : name + ".cc");
+         Files.createDirectories(outfile.getParent());
+         try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.WRITE))
+         {
+            ComponentSetFormat.write(outfile, components);
+         }
+      }
+   }
 
    private void performDocstrum(ImageProxy proxy)
    {
       // 1. Read, threshold the image, extract connected components
-      long start = System.currentTimeMillis();
       BufferedImage image = proxy.getImage();
-      long end = System.currentTimeMillis();
-      System.out.println("  Image Load: " + (end - start) + " ms");
       
       try
       {
-         Set<ConnectedComponent> ccSet = findConnectedComponents(image);
+         Set<ConnectedComponent> ccSet = findConnectedComponents(proxy);
          FletcherGraphicsSegmentation fletcher = new FletcherGraphicsSegmentation(proxy, ccSet);
+         fletcher.setDiagnosticLevel(diagnostics);
          Set<ConnectedComponent> textCCs = fletcher.process();
          Set<ConnectedComponent> imageCCs = new HashSet<>(ccSet);
          imageCCs.removeAll(textCCs);
 //         if (ccSet.size() < 10)     // if fewer than 10 cc's assume page is blank.
 //            return;
 //         
-//         Set<ComponentNeighbors> adjTable = findNeighbors(ccSet, 5);
+//         NeighborTable adjTable = findNeighbors(ccSet, 5);
 //         
 //         AngleHistogram angleHistogram = AngleHistogram.create(adjTable);
 //         
 //         // estimate spacing using angle histogram
-//         Set<AdjacentCC> withinLine = adjTable.stream()
-//               .flatMap(adj -> adj.neighbors.stream())
-//               .filter(angleHistogram::isWithinLine)
-//               .collect(Collectors.toSet());
-//         
-//         Set<AdjacentCC> betweenLine = adjTable.stream()
-//               .flatMap(adj -> adj.neighbors.stream())
-//               .filter(angleHistogram::isBetweenLine)
-//               .collect(Collectors.toSet());
+//         double[] withinLine = adjTable.getDistances(angleHistogram::isWithinLine);
+//         double[] betweenLine = adjTable.getDistances(angleHistogram::isBetweenLine);
 //         
 //         double withinLineSpacing = estimateSpacing(withinLine, 2, 2);
 //         double betweenLineSpacing = estimateSpacing(betweenLine, 2, 2);
@@ -166,17 +281,20 @@ public class Docstrum
 //         System.out.println("  Between Line Spacing: " + betweenLineSpacing);
 //
 //         // identify lines 
-//         Collection<Line> lines = findLines(adjTable, angleHistogram, 25000);
+//         Collection<Line> lines = findLines(adjTable, angleHistogram);
 //         
 //         start = System.currentTimeMillis();
 //         proxy.write("angles", angleHistogram.plot());
 //         renderOutputImages(proxy, image, ccSet, adjTable, angleHistogram, lines);
-         BufferedImage renderCCs = CCWriter.render(ccSet, image.getWidth(), image.getHeight());
-         proxy.write("rawCCs", "png", renderCCs);
-         BufferedImage textCCImgs = CCWriter.render(textCCs, image.getWidth(), image.getHeight());
-         proxy.write("textCCs", "png", textCCImgs);
-         BufferedImage imageCCImgs = CCWriter.render(imageCCs, image.getWidth(), image.getHeight());
-         proxy.write("imageCCs", "png", imageCCImgs);
+         if (diagnostics.includes(DiagnosticLevel.OUTPUT))
+         {
+            BufferedImage renderCCs = CCWriter.render(ccSet, image.getWidth(), image.getHeight());
+            proxy.write("rawCCs", "png", renderCCs);
+            BufferedImage textCCImgs = CCWriter.render(textCCs, image.getWidth(), image.getHeight());
+            proxy.write("textCCs", "png", textCCImgs);
+            BufferedImage imageCCImgs = CCWriter.render(imageCCs, image.getWidth(), image.getHeight());
+            proxy.write("imageCCs", "png", imageCCImgs);
+         }
 //         renderOutputImages(proxy, image, ccSet, adjTable, angleHistogram, lines);
 //         end = System.currentTimeMillis();
 //         System.out.println("  Write imgs: " + (end - start) + " ms");
@@ -193,115 +311,72 @@ public class Docstrum
    }
    
    /**
+    * Groups components into lines, such that components joined by a link that is 
+    * 'within line' belong to the same line.
     * 
-    * @param ccPairs Pairs of connected components connected by a link that is 'within line'
+    * @param adjTable The neighbors of each component on the page.
+    * @param angleHist The angle histogram used to classify links as 'within line'.
+    * @return The lines on the page, in order of the first component of each line.
     */
-   public Collection<Line> findLines(Set<ComponentNeighbors> adjTable, AngleHistogram angleHist, int maxSize)
+   public Collection<Line> findLines(NeighborTable adjTable, AngleHistogram angleHist)
    {
-      // NOTE this impl is pretty awkward.
-      // indexed by cc seq number, values are the UF set id for the corresponding lines.
-      int[] labels = new int[maxSize];
-      ConnectedComponent[] components = new ConnectedComponent[maxSize];
-      Arrays.fill(labels, -1);
-      UnionFind uf = new UnionFind(maxSize);
-      for (ComponentNeighbors ccNeighbors : adjTable)
+      // union-find is over the dense component indices, so it is sized by the number 
+      // of components on the page rather than by their sequence numbers
+      int numComponents = adjTable.getComponentCount();
+      int[] labels = new int[numComponents];
+      int numLines;
+      if (adjTable.size < PARALLEL_GROUPING_THRESHOLD)
       {
-         ConnectedComponent cc = ccNeighbors.cc;
-         int srcSetId = getSetId(cc, uf, labels);
-         components[cc.getSequence()] = cc;
-         
-         for (AdjacentCC adjCC : ccNeighbors.neighbors)
+         DenseUnionFind uf = new DenseUnionFind(numComponents);
+         for (int i = 0; i < adjTable.size; i++)
          {
-            if (angleHist.isWithinLine(adjCC))
-            {
-               int destSet = getSetId(adjCC.cc, uf, labels);
-               uf.union(srcSetId, destSet);
-            }
+            if (angleHist.isWithinLine(adjTable.theta[i]))
+               uf.union(adjTable.indexOf(adjTable.src[i]), adjTable.indexOf(adjTable.dst[i]));
          }
-      }
-      
-      LineCollectionBuilder lbuilder = new LineCollectionBuilder();
-      for (int ccSeq = 0; ccSeq < labels.length; ccSeq++)
-      {
-         int ccLabel = labels[ccSeq];
-         if (ccLabel < 0)
-            continue;      
          
-         lbuilder.add(components[ccSeq], uf.find(ccLabel));
+         numLines = uf.label(labels);
       }
-      
-      return lbuilder.build();
-   }
-
-   
-   private static class LineCollectionBuilder 
-   {
-      private volatile int lineId = 0;
-      Map<Integer, LineBuilder> lines = new HashMap<>();     // map of set id to line
-      
-      public LineBuilder create(int setId)
+      else
       {
-         LineBuilder line = new LineBuilder();
-         line.sequence = lineId++;
-         lines.put(Integer.valueOf(setId), line);
+         // both structures label sets by their smallest element, so the lines are the same
+         ConcurrentUnionFind uf = new ConcurrentUnionFind(numComponents);
+         IntStream.range(0, adjTable.size).parallel().forEach(i -> {
+            if (angleHist.isWithinLine(adjTable.theta[i]))
+               uf.union(adjTable.indexOf(adjTable.src[i]), adjTable.indexOf(adjTable.dst[i]));
+         });
          
-         return line;
+         numLines = uf.label(labels);
       }
       
-      public void add(ConnectedComponent cc, int setId)
+      LineAccumulator[] lines = new LineAccumulator[numLines];
+      for (int ix = 0; ix < numComponents; ix++)
       {
-         LineBuilder line = lines.get(Integer.valueOf(setId));
-         if (line == null)
-            line = create(setId);
+         int line = labels[ix];
+         if (lines[line] == null)
+            lines[line] = new LineAccumulator();
          
-         line.add(cc);
+         lines[line].add(adjTable.getComponentAt(ix));
       }
       
-      public List<Line> build()
+      List<Line> result = new ArrayList<>(numLines);
+      for (int line = 0; line < numLines; line++)
       {
-         return lines.values().stream()
-               .map(LineBuilder::build)
-               .collect(Collectors.toList());
+         result.add(lines[line].build(line));
       }
       
-      private static class LineBuilder 
-      {
-         int sequence;
-         List<ConnectedComponent> components = new ArrayList<>();
-         
-         void add(ConnectedComponent cc)
-         {
-            components.add(cc);
-         }
-         
-         public Line build()
-         {
-            return new Line(components, sequence);
-         }
-      }
-   }
-   
-   
-   private int getSetId(ConnectedComponent cc, UnionFind uf, int[] labels)
-   {
-      int srcIx = cc.getSequence();
-      if (labels[srcIx] < 0)
-         labels[srcIx] = uf.makeSet();
-      return labels[srcIx];
+      return result;
    }
 
    /**
     * 
-    * @param withinLine The set of adjacent connected components between which to compute
-    *       the distance. 
+    * @param distances The distances between the pairs of adjacent connected components 
+    *       for which to estimate the spacing. 
     * @param resolution Resolution in pixels for the histogram. 
     * @param ts smoothing tolerance that is smaller than the closest expected peak spacing.
     * @throws IOException 
     */
-   private double estimateSpacing(Set<AdjacentCC> withinLine, int resolution, int ts) throws IOException
+   private double estimateSpacing(double[] distances, int resolution, int ts) throws IOException
    {
-      double[] distances = withinLine.parallelStream()
-               .mapToDouble(adjCC -> adjCC.dist).toArray();
       DoubleSummaryStatistics stats = DoubleStream.of(distances)
             .collect(DoubleSummaryStatistics::new,
                      DoubleSummaryStatistics::accept,
@@ -337,7 +412,7 @@ public class Docstrum
       
       // divide by window size for smoothing
       // divide by nbins to normalize histogram in range 0..1 
-      double denominator = withinLine.size() * windowSize;  
+      double denominator = distances.length * windowSize;  
       double[] smoothed = IntStream.range(0,  nbins)
             .parallel()
             .mapToDouble(i -> (iHistogram[i + windowSize] - iHistogram[i]) / denominator)
@@ -380,15 +455,33 @@ public class Docstrum
       return image;
    }
 
-   private Set<ConnectedComponent> findConnectedComponents(BufferedImage image) throws BinarizationException
+   /**
+    * Extracts the components of a page as runs with the configured extractor, consulting
+    * the cache first if one has been configured.
+    *
+    * @param image Supplies the decoded page image. Not called on a cache hit.
+    */
+   private List<RunLengthComponent> extractComponents(ImageProxy proxy, Supplier<BufferedImage> image) throws BinarizationException, IOException
+   {
+      ComponentExtractor selected = fused ? extractor : twoPassExtractor;
+      return (cache == null)
+            ? selected.extract(image.get())
+            : cache.getComponents(proxy.getPath(), decoding, selected, image);
+   }
+
+   private Set<ConnectedComponent> findConnectedComponents(ImageProxy proxy) throws BinarizationException, IOException
    {
-      IntegralImage integralImage = IntegralImageImpl.create(image);
-      BinaryImage binaryImage = binarizer.binarize(integralImage);
-      ConnectedComponentFinder finder = new ConnectedComponentFinder(binaryImage, 100_000);
-      ConnectComponentSet components = finder.call();
+      // the extractors time binarization and labeling themselves
+      Collection<? extends ConnectedComponent> components;
+      if (cache != null || fused)
+         components = extractComponents(proxy, proxy::getImage);
+      else
+         components = twoPassExtractor.findComponents(proxy.getImage());
 
-      Set<ConnectedComponent> ccSet = components.asSet().stream()
-            .filter(cc -> cc.getBounds().getArea() > minComponentSize)   
+      // component areas shrink by the square of the subsampling factor
+      int minArea = minComponentSize / (subsampling * subsampling);
+      Set<ConnectedComponent> ccSet = components.stream()
+            .filter(cc -> cc.getBounds().getArea() > minArea)   
             .collect(Collectors.toSet());
 
       return ccSet;
@@ -401,16 +494,12 @@ public class Docstrum
     * @param k
     * @return
     */
-   private Set<ComponentNeighbors> findNeighbors(Set<ConnectedComponent> ccSet, int k)
+   private NeighborTable findNeighbors(Set<ConnectedComponent> ccSet, int k)
    {
-      long start = System.currentTimeMillis();
-      Set<ComponentNeighbors> adjTable = ccSet.parallelStream()
-            .map((ref) -> new ComponentNeighbors(ref, ccSet, k))
-            .collect(Collectors.toSet());
-      long end = System.currentTimeMillis();
-      System.out.println("   Adj Table: " + (end - start) + " ms");
-      
-      return adjTable;
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.NEIGHBORS))
+      {
+         return NeighborTable.create(ccSet, k);
+      }
    }
    
    /**
@@ -423,8 +512,11 @@ public class Docstrum
     * @param lines 
     * @throws IOException
     */
-   private void renderOutputImages(ImageProxy proxy, BufferedImage image, Set<ConnectedComponent> ccSet, Set<ComponentNeighbors> adjTable, AngleHistogram angleHistogram, Collection<Line> lines) throws IOException
+   private void renderOutputImages(ImageProxy proxy, BufferedImage image, Set<ConnectedComponent> ccSet, NeighborTable adjTable, AngleHistogram angleHistogram, Collection<Line> lines) throws IOException
    {
+      if (!diagnostics.includes(DiagnosticLevel.OUTPUT))
+         return;
+      
       BufferedImage renderCCs = CCWriter.render(ccSet, image.getWidth(), image.getHeight());
       proxy.write("docstrum", "png", plot(adjTable));
       
@@ -467,23 +559,23 @@ public class Docstrum
     * @param hist 
     * @throws IOException
     */
-   private static BufferedImage renderAdjacencyTable(BufferedImage renderCCs, Set<ComponentNeighbors> adjTable) throws IOException
+   private static BufferedImage renderAdjacencyTable(BufferedImage renderCCs, NeighborTable adjTable) throws IOException
    {
       Graphics g = renderCCs.getGraphics();
       g.setColor(Color.black);
       
-      adjTable.stream()
-      .forEach(adj -> {
-         BoundingBox box = adj.cc.getBounds();
-         Point c1 = adj.cc.getCentroid();
+      for (int ix = 0; ix < adjTable.getComponentCount(); ix++)
+      {
+         BoundingBox box = adjTable.getComponentAt(ix).getBounds();
          g.drawRect(box.getLeft(), box.getTop(), box.getWidth(), box.getHeight());
-
-         adj.neighbors.stream()
-         .forEach(adjCC -> {
-            Point c2 = adjCC.cc.getCentroid();
-            g.drawLine(c1.getX(), c1.getY(), c2.getX(), c2.getY());
-         });
-      });
+      }
+      
+      for (int i = 0; i < adjTable.size; i++)
+      {
+         Point c1 = adjTable.getComponent(adjTable.src[i]).getCentroid();
+         Point c2 = adjTable.getComponent(adjTable.dst[i]).getCentroid();
+         g.drawLine(c1.getX(), c1.getY(), c2.getX(), c2.getY());
+      }
       g.dispose();
       return renderCCs;
    }
@@ -500,14 +592,21 @@ public class Docstrum
       g.setColor(Color.black);
       int barWidth = width / histogram.length;
       
-      for (Polynomial.CriticalPoint cp : eq.findCriticalPoints(0, 360, 1))
+      for (Polynomial.CriticalPoint cp : eq.findCriticalPoints(0, 360))
       {
          g.drawLine((int)cp.point, 0, (int)cp.point, height);
       }
       
+      double[] fitted = new double[histogram.length];
+      for (int x = 0; x < fitted.length; x++)
+      {
+         fitted[x] = x;
+      }
+      eq.evaluate(fitted, fitted);
+      
       for (int x = 1; x < histogram.length; x++)
       {
-         double y = eq.applyAsDouble(x);
+         double y = fitted[x];
          
          int a = (int)(y * height * 20);
          int barHeight = Math.min(a, height);      // HACK: scale by 20 for better display
@@ -520,12 +619,8 @@ public class Docstrum
       return image;
    }
 
-   private static BufferedImage plot(Set<ComponentNeighbors> adjTable)
+   private static BufferedImage plot(NeighborTable adjTable)
    {
-      List<ComponentNeighbors.AdjacentCC> pairs = adjTable.parallelStream()
-            .flatMap(neighbors -> neighbors.neighbors.stream())
-            .collect(Collectors.toList());
-      
       // TODO create buffered image
       int width = 400;
       int height = 400;
@@ -533,15 +628,16 @@ public class Docstrum
       WritableRaster raster = image.getRaster();      // TODO use a Graphics2D?
       initializeBackground(raster);
 
-      pairs.forEach(pair -> {
-         double x = pair.dist * Math.cos(pair.theta) + (width / 2);
-         double y = pair.dist * Math.sin(pair.theta) + (height / 2);
+      for (int i = 0; i < adjTable.size; i++)
+      {
+         double x = adjTable.dist[i] * Math.cos(adjTable.theta[i]) + (width / 2);
+         double y = adjTable.dist[i] * Math.sin(adjTable.theta[i]) + (height / 2);
          
          if (x < 0 || x >= width || y < 0 || y >= height)
-            return;
+            continue;
 
          raster.setSample((int)x, (int)y, 0, 0);
-      });
+      }
       
       image.flush();
       return image;
@@ -578,6 +674,89 @@ public class Docstrum
                                   .collect(Collectors.toSet());
    }
    
+   static int getIntProperty(ConfigurationProperties properties, String key, int defaultValue)
+   {
+      String value = properties.getPropertyValue(key, String.class);
+      if (value == null || value.trim().isEmpty())
+         return defaultValue;
+      
+      try
+      {
+         return Integer.parseInt(value.trim());
+      }
+      catch (NumberFormatException nfe)
+      {
+         throw new IllegalArgumentException("Invalid value [" + value + "] for configuration property [" + key + "]. Expected an integer.", nfe);
+      }
+   }
+   
+   /**
+    * Opens the journal of completed pages, if one has been configured. Each shard of a 
+    * sharded run writes to its own journal file.
+    * 
+    * @return The journal, or {@code null} if no journal has been configured.
+    */
+   private static ProgressJournal openJournal(ConfigurationProperties properties) throws IOException
+   {
+      String journalFile = properties.getPropertyValue(JOURNAL_PARAM, String.class);
+      if (journalFile == null || journalFile.trim().isEmpty())
+         return null;
+      
+      int batchSize = getIntProperty(properties, JOURNAL_BATCH_PARAM, 64);
+      int shardCount = getIntProperty(properties, SHARD_COUNT_PARAM, 1);
+      int shardIndex = getIntProperty(properties, SHARD_INDEX_PARAM, 0);
+      String shard = (shardCount > 1) ? shardIndex + "-of-" + shardCount : null;
+      return new ProgressJournal(Paths.get(journalFile.trim()), batchSize, shard);
+   }
+   
+   /**
+    * Opens the coordinator used to share the items of the item list with other processes,
+    * if a shared directory has been configured.
+    * 
+    * @return The coordinator, or {@code null} if no shared directory has been configured.
+    */
+   private static WorkCoordinator openCoordinator(ConfigurationProperties properties) throws IOException
+   {
+      String sharedDir = properties.getPropertyValue(COORDINATOR_DIR_PARAM, String.class);
+      if (sharedDir == null || sharedDir.trim().isEmpty())
+         return null;
+      
+      int leaseSeconds = getIntProperty(properties, LEASE_PARAM, 600);
+      return new WorkCoordinator(Paths.get(sharedDir.trim()), leaseSeconds);
+   }
+   
+   /**
+    * @return {@code true} if the supplied item belongs to the shard of the item list that 
+    *       is to be processed by this run. Items are assigned to shards by the hash of their
+    *       path, so that every process assigns items identically.
+    */
+   private static boolean isInShard(String item, int shardCount, int shardIndex)
+   {
+      return shardCount <= 1 || Math.floorMod(item.trim().hashCode(), shardCount) == shardIndex;
+   }
+   
+   /**
+    * Selects the extractor used to find connected components and sets up the on-disk cache
+    * of extracted components, if a cache directory has been configured. Cached components
+    * are keyed by the settings used to decode pages, since these change the image that is
+    * binarized. With a cache, the two-pass chain labels the runs of its binary image so that
+    * its components can be cached (see {@link TwoPassComponentExtractor}).
+    */
+   private void configureExtraction(ConfigurationProperties properties) throws IOException
+   {
+      subsampling = getIntProperty(properties, SUBSAMPLING_PARAM, 1);
+      boolean grayscale = Boolean.parseBoolean(properties.getPropertyValue(GRAYSCALE_PARAM, String.class));
+      decoding = (grayscale || subsampling > 1) ? "grayscale[subsampling=" + subsampling + "]" : "default";
+      fused = Boolean.parseBoolean(properties.getPropertyValue(FUSED_EXTRACTOR_PARAM, String.class));
+      
+      String cacheDir = properties.getPropertyValue(CACHE_DIR_PARAM, String.class);
+      if (cacheDir == null || cacheDir.trim().isEmpty())
+         return;
+      
+      long maxBytes = getIntProperty(properties, CACHE_SIZE_PARAM, 2048) * 1024L * 1024L;
+      cache = new ComponentCache(Paths.get(cacheDir.trim()), maxBytes);
+   }
+   
    private DirectoryImporter getImporter(ConfigurationProperties properties)
    {
       String outputDir = properties.getPropertyValue(OUTPUT_DIR_PARAM, String.class); // "I:\\Projects\\HathiTrust WCSA\\output";
@@ -590,11 +769,23 @@ public class Docstrum
       Path root = Paths.get(baseDir);
       Path output = Paths.get(outputDir);
       DirectoryImporter importer = new DirectoryImporter(root, output);
+      int subsampling = getIntProperty(properties, SUBSAMPLING_PARAM, 1);
+      if (Boolean.parseBoolean(properties.getPropertyValue(GRAYSCALE_PARAM, String.class)) || subsampling > 1)
+         importer.setImageLoader(new GrayscaleImageLoader(subsampling, null));
+      
+      int shardCount = getIntProperty(properties, SHARD_COUNT_PARAM, 1);
+      int shardIndex = getIntProperty(properties, SHARD_INDEX_PARAM, 0);
+      if (shardCount <= 0 || shardIndex < 0 || shardIndex >= shardCount)
+         throw new IllegalArgumentException("Invalid shard [" + shardIndex + "] of [" + shardCount + "]. Expected 0 <= index < count.");
+      
       try (BufferedReader reader = Files.newBufferedReader(p))
       {
          while (reader.ready())
          {
             String line = reader.readLine();  
+            if (!isInShard(line, shardCount, shardIndex))
+               continue;
+            
             importer.addDirectory(root.resolve(line));
          }
       }
@@ -1,16 +1,10 @@
 package edu.tamu.tcat.visualpage.wcsa.docstrum;
 
 import java.awt.Graphics;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import org.apache.commons.math3.fitting.PolynomialCurveFitter;
-import org.apache.commons.math3.fitting.WeightedObservedPoint;
 
 import edu.tamu.tcat.analytics.image.region.BoundingBox;
 import edu.tamu.tcat.analytics.image.region.Point;
-import edu.tamu.tcat.analytics.image.region.SimpleBoundingBox;
 import edu.tamu.tcat.analytics.image.region.SimplePoint;
 import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
 import edu.tamu.tcat.visualpage.wcsa.Polynomial;
@@ -24,7 +18,7 @@ public class Line
    private final static double halfPi = Math.PI / 2;
    
    private final int sequence;
-   private final List<ConnectedComponent> components;
+   private final int size;
    
    private final Polynomial fitline;
    private final BoundingBox bounds;
@@ -34,39 +28,25 @@ public class Line
    
    public Line(List<ConnectedComponent> components, int seqId)
    {
-      this.components = new ArrayList<>(components);
+      this(LineAccumulator.of(components), seqId);
+   }
+   
+   /**
+    * @param acc The components of the line. Must not be empty.
+    * @param seqId The id of this line.
+    */
+   Line(LineAccumulator acc, int seqId)
+   {
       this.sequence = seqId;
-
-      PolynomialCurveFitter fitter = PolynomialCurveFitter.create(1);
-      List<WeightedObservedPoint> points = components.stream().map(cc -> { 
-         Point centroid = cc.getCentroid();
-         return new WeightedObservedPoint(1, centroid.getX(), centroid.getY());
-      })
-      .collect(Collectors.toList());
-      
-      // compute centroid bounding box and line bounding box
-      int[] lineBounds = new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
-      int xMin = Integer.MAX_VALUE;
-      int xMax = Integer.MIN_VALUE;
-      for (ConnectedComponent cc : components)
-      {
-         BoundingBox box = cc.getBounds();
-         lineBounds[0] = Math.min(lineBounds[0], box.getLeft());
-         lineBounds[1] = Math.min(lineBounds[1], box.getTop());
-         lineBounds[2] = Math.max(lineBounds[2], box.getRight());
-         lineBounds[3] = Math.max(lineBounds[3], box.getBottom());
-         
-         Point centroid = cc.getCentroid();
-         xMin = Math.min(xMin, centroid.getX());
-         xMax = Math.min(xMax, centroid.getX());
-      }
-      
-      bounds = new SimpleBoundingBox(lineBounds[0], lineBounds[1], lineBounds[2], lineBounds[3]);
-      fitline = new Polynomial(fitter.fit(points));
+      this.size = acc.size();
+      this.bounds = acc.getBounds();
+      this.fitline = acc.fit();
       
+      int xMin = acc.getMinCentroidX();
       int y = (int)Math.round(fitline.applyAsDouble(xMin));
       start = new SimplePoint(xMin, y);
       
+      int xMax = acc.getMaxCentroidX();
       y = (int)Math.round(fitline.applyAsDouble(xMax));
       end = new SimplePoint(xMax, y);
    }
@@ -76,6 +56,14 @@ public class Line
       return sequence;
    }
    
+   /**
+    * @return The number of connected components in this line.
+    */
+   public int size()
+   {
+      return size;
+   }
+   
    public Point getStart() 
    {
       return start;
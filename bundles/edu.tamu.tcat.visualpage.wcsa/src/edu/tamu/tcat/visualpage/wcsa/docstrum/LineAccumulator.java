@@ -0,0 +1,150 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.Collection;
+
+import edu.tamu.tcat.analytics.image.region.BoundingBox;
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.analytics.image.region.SimpleBoundingBox;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.visualpage.wcsa.Polynomial;
+
+/**
+ * Accumulates the connected components of a {@link Line} as they are discovered.
+ *
+ * <p>
+ * Only running sums over the component centroids and the bounds of the components are
+ * kept, so each component is added in constant time and the components are not retained.
+ * Lines are accumulated in a single pass over the components once they have been labeled
+ * by a union-find structure. The center line is then fit in closed form by ordinary least
+ * squares.
+ *
+ * <p>
+ * Sums are kept as {@code long} values, so they are exact for any realistic page.
+ * Instances are not thread safe.
+ */
+public class LineAccumulator
+{
+   private int count = 0;
+   private long sumX = 0;
+   private long sumY = 0;
+   private long sumXY = 0;
+   private long sumXX = 0;
+
+   private int minCentroidX = Integer.MAX_VALUE;
+   private int maxCentroidX = Integer.MIN_VALUE;
+
+   private int left = Integer.MAX_VALUE;
+   private int top = Integer.MAX_VALUE;
+   private int right = Integer.MIN_VALUE;
+   private int bottom = Integer.MIN_VALUE;
+
+   /**
+    * @param components The components of a line.
+    * @return An accumulator containing the supplied components.
+    */
+   public static LineAccumulator of(Collection<ConnectedComponent> components)
+   {
+      LineAccumulator acc = new LineAccumulator();
+      for (ConnectedComponent cc : components)
+      {
+         acc.add(cc);
+      }
+
+      return acc;
+   }
+
+   /**
+    * Adds a component to this line.
+    *
+    * @param cc The component to add.
+    * @return This accumulator.
+    */
+   public LineAccumulator add(ConnectedComponent cc)
+   {
+      Point centroid = cc.getCentroid();
+      long x = centroid.getX();
+      long y = centroid.getY();
+
+      count++;
+      sumX += x;
+      sumY += y;
+      sumXY += x * y;
+      sumXX += x * x;
+      minCentroidX = Math.min(minCentroidX, centroid.getX());
+      maxCentroidX = Math.max(maxCentroidX, centroid.getX());
+
+      BoundingBox box = cc.getBounds();
+      left = Math.min(left, box.getLeft());
+      top = Math.min(top, box.getTop());
+      right = Math.max(right, box.getRight());
+      bottom = Math.max(bottom, box.getBottom());
+      return this;
+   }
+
+   /**
+    * @return The number of components in this line.
+    */
+   public int size()
+   {
+      return count;
+   }
+
+   /**
+    * @return The smallest box containing all components of this line.
+    */
+   public BoundingBox getBounds()
+   {
+      checkNotEmpty();
+      return new SimpleBoundingBox(left, top, right, bottom);
+   }
+
+   /**
+    * @return The smallest x coordinate of the centroid of any component in this line.
+    */
+   public int getMinCentroidX()
+   {
+      checkNotEmpty();
+      return minCentroidX;
+   }
+
+   /**
+    * @return The largest x coordinate of the centroid of any component in this line.
+    */
+   public int getMaxCentroidX()
+   {
+      checkNotEmpty();
+      return maxCentroidX;
+   }
+
+   /**
+    * Fits a straight line through the centroids of the components by least squares. If
+    * all centroids share the same x coordinate, the slope is taken to be zero.
+    *
+    * @return The fitted line, as a polynomial of degree 1.
+    */
+   public Polynomial fit()
+   {
+      checkNotEmpty();
+
+      long sxx = count * sumXX - sumX * sumX;
+      long sxy = count * sumXY - sumX * sumY;
+      double slope = (sxx == 0) ? 0 : (double)sxy / sxx;
+      double intercept = (sumY - slope * sumX) / count;
+      return new Polynomial(new double[] { intercept, slope });
+   }
+
+   /**
+    * @param seqId The id of the line to build.
+    * @return A line containing the components added to this accumulator.
+    */
+   public Line build(int seqId)
+   {
+      return new Line(this, seqId);
+   }
+
+   private void checkNotEmpty()
+   {
+      if (count == 0)
+         throw new IllegalStateException("No components have been added to this line.");
+   }
+}
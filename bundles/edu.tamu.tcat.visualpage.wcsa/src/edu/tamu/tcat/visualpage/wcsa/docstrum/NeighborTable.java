@@ -0,0 +1,204 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.DoublePredicate;
+import java.util.stream.IntStream;
+
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+
+/**
+ * The {@code k} nearest neighbors of each connected component on a page, stored as parallel
+ * primitive arrays with one entry per pair of adjacent components. Entry {@code i} links
+ * the component with sequence number {@code src[i]} to the component with sequence number
+ * {@code dst[i]}, at a distance of {@code dist[i]} and an angle of {@code theta[i]} (in
+ * the range {@code [-PI, PI]}) between their centroids.
+ *
+ * <p>
+ * Entries are grouped by source component and ordered by increasing distance within each
+ * group. Components are looked up by their sequence number using
+ * {@link #getComponent(int)}. Components are also numbered densely from zero, so that
+ * per-component state may be held in arrays sized by {@link #getComponentCount()} rather
+ * than by the largest sequence number. Consumers iterate the arrays directly, so no
+ * objects are allocated per pair. Instances must not be modified once created.
+ */
+public class NeighborTable
+{
+   /** The components of the table, indexed densely. */
+   final ConnectedComponent[] components;
+   
+   /** The dense index of each component by sequence number, or {@code -1} if unused. */
+   final int[] indexBySequence;
+
+   /** The number of pairs in the table. */
+   final int size;
+   final int[] src;
+   final int[] dst;
+   final double[] dist;
+   final double[] theta;
+
+   private NeighborTable(ConnectedComponent[] components, int[] indexBySequence, int size, int[] src, int[] dst, double[] dist, double[] theta)
+   {
+      this.components = components;
+      this.indexBySequence = indexBySequence;
+      this.size = size;
+      this.src = src;
+      this.dst = dst;
+      this.dist = dist;
+      this.theta = theta;
+   }
+
+   /**
+    * Finds the {@code k} nearest neighbors of each of the supplied components.
+    *
+    * @param ccSet The components on a page. Sequence numbers must be unique and not negative.
+    * @param k The number of neighbors to find for each component.
+    * @return The table of neighbors.
+    */
+   public static NeighborTable create(Collection<ConnectedComponent> ccSet, int k)
+   {
+      ConnectedComponent[] refs = ccSet.toArray(new ConnectedComponent[ccSet.size()]);
+      int maxSeq = -1;
+      for (ConnectedComponent cc : refs)
+      {
+         maxSeq = Math.max(maxSeq, cc.getSequence());
+      }
+
+      int[] indexBySequence = new int[maxSeq + 1];
+      Arrays.fill(indexBySequence, -1);
+      for (int i = 0; i < refs.length; i++)
+      {
+         indexBySequence[refs[i].getSequence()] = i;
+      }
+
+      // each reference fills its own block of k slots, so the search can run in parallel
+      int slots = Math.max(k, 0);
+      CentroidIndex index = CentroidIndex.create(ccSet);
+      int[] counts = new int[refs.length];
+      int[] dstSlots = new int[refs.length * slots];
+      double[] distSlots = new double[refs.length * slots];
+      double[] thetaSlots = new double[refs.length * slots];
+      IntStream.range(0, refs.length).parallel().forEach(i -> {
+         Point px = refs[i].getCentroid();
+         ConnectedComponent[] nearest = index.findNearest(refs[i], k);
+         for (int j = 0; j < nearest.length; j++)
+         {
+            Point centroid = nearest[j].getCentroid();
+            int slot = i * slots + j;
+            dstSlots[slot] = nearest[j].getSequence();
+            distSlots[slot] = distance(px, centroid);
+            thetaSlots[slot] = angle(px, centroid);
+         }
+
+         counts[i] = nearest.length;
+      });
+
+      int size = IntStream.of(counts).sum();
+      int[] src = new int[size];
+      int[] dst = new int[size];
+      double[] dist = new double[size];
+      double[] theta = new double[size];
+      int pos = 0;
+      for (int i = 0; i < refs.length; i++)
+      {
+         int n = counts[i];
+         Arrays.fill(src, pos, pos + n, refs[i].getSequence());
+         System.arraycopy(dstSlots, i * slots, dst, pos, n);
+         System.arraycopy(distSlots, i * slots, dist, pos, n);
+         System.arraycopy(thetaSlots, i * slots, theta, pos, n);
+         pos += n;
+      }
+
+      return new NeighborTable(refs, indexBySequence, size, src, dst, dist, theta);
+   }
+
+   /**
+    * @return The number of pairs of adjacent components in this table.
+    */
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * @param seq The sequence number of a component.
+    * @return The component, or {@code null} if no component in this table has the
+    *       supplied sequence number.
+    */
+   public ConnectedComponent getComponent(int seq)
+   {
+      int ix = indexOf(seq);
+      return (ix < 0) ? null : components[ix];
+   }
+
+   /**
+    * @param seq The sequence number of a component.
+    * @return The dense index of the component, or {@code -1} if no component in this 
+    *       table has the supplied sequence number.
+    */
+   public int indexOf(int seq)
+   {
+      return (seq >= 0 && seq < indexBySequence.length) ? indexBySequence[seq] : -1;
+   }
+
+   /**
+    * @return The number of components in this table.
+    */
+   public int getComponentCount()
+   {
+      return components.length;
+   }
+
+   /**
+    * @param ix The dense index of a component, in the range {@code [0, getComponentCount())}.
+    * @return The component.
+    */
+   public ConnectedComponent getComponentAt(int ix)
+   {
+      return components[ix];
+   }
+
+   /**
+    * @return One greater than the largest sequence number of any component in this table.
+    */
+   public int getSequenceLimit()
+   {
+      return indexBySequence.length;
+   }
+
+   /**
+    * @param accept Tests the angle of each pair.
+    * @return The distances of all pairs whose angle is accepted, in table order.
+    */
+   public double[] getDistances(DoublePredicate accept)
+   {
+      double[] result = new double[size];
+      int n = 0;
+      for (int i = 0; i < size; i++)
+      {
+         if (accept.test(theta[i]))
+            result[n++] = dist[i];
+      }
+
+      return (n == size) ? result : Arrays.copyOf(result, n);
+   }
+
+   private static double distance(Point a, Point b)
+   {
+      int x = a.getX() - b.getX();
+      int y = a.getY() - b.getY();
+
+      return Math.sqrt(x * x + y * y);
+   }
+
+   private static double angle(Point a, Point b)
+   {
+      // See
+      // http://stackoverflow.com/questions/7586063/how-to-calculate-the-angle-between-a-line-and-the-horizontal-axis
+      int x = b.getX() - a.getX();
+      int y = b.getY() - a.getY();
+
+      return Math.atan2(y, x);
+   }
+}
@@ -12,24 +12,23 @@ import java.util.DoubleSummaryStatistics;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import edu.tamu.tcat.analytics.image.integral.IntegralImage;
-import edu.tamu.tcat.analytics.image.integral.IntegralImageImpl;
 import edu.tamu.tcat.analytics.image.region.BoundingBox;
 import edu.tamu.tcat.analytics.image.region.Point;
 import edu.tamu.tcat.dia.binarization.BinarizationException;
-import edu.tamu.tcat.dia.binarization.BinaryImage;
-import edu.tamu.tcat.dia.binarization.sauvola.FastSauvola;
-import edu.tamu.tcat.dia.segmentation.cc.ConnectComponentSet;
 import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
 import edu.tamu.tcat.dia.segmentation.cc.twopass.CCWriter;
-import edu.tamu.tcat.dia.segmentation.cc.twopass.ConnectedComponentFinder;
+import edu.tamu.tcat.visualpage.wcsa.DiagnosticLevel;
 import edu.tamu.tcat.visualpage.wcsa.fletcher.HoughTransform.AngleColumn;
 import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.ComponentCache;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.TwoPassComponentExtractor;
 
 /**
  * 
@@ -39,18 +38,56 @@ import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
 public class FletcherGraphicsSegmentation
 {
    private static final double halfPi = Math.PI / 2;
-   private static FastSauvola binarizer = new FastSauvola();
+   private static TwoPassComponentExtractor twoPassExtractor = new TwoPassComponentExtractor();
    private ImageProxy proxy;
    private Collection<ConnectedComponent> ccSet;
+   private ComponentCache cache;
+   private String decoding;
+   private DiagnosticLevel diagnostics = DiagnosticLevel.OFF;
 
+   /**
+    * @param proxy The page to segment.
+    * @param ccSet The connected components of the page, or {@code null} to extract them
+    *       from the page image when it is processed.
+    */
    public FletcherGraphicsSegmentation(ImageProxy proxy, Collection<ConnectedComponent> ccSet)
    {
       this.proxy = proxy;
       this.ccSet = ccSet;
    }
 
+   /**
+    * Sets the cache consulted before extracting the components of the page. Used only if
+    * no components were supplied to the constructor. Components are extracted as runs by
+    * {@link TwoPassComponentExtractor#extract(BufferedImage)} so that they can be cached.
+    *
+    * @param cache The cache of extracted components, or {@code null} to extract the
+    *       components without caching them.
+    * @param decoding Describes how the page image is decoded. See
+    *       {@link ComponentCache#getComponents(java.nio.file.Path, String, edu.tamu.tcat.visualpage.wcsa.segmentation.ComponentExtractor, java.util.function.Supplier)}.
+    */
+   public void setComponentCache(ComponentCache cache, String decoding)
+   {
+      this.cache = cache;
+      this.decoding = decoding;
+   }
+
+   /**
+    * Sets which debug images are rendered while this page is processed. By default, no
+    * debug images are rendered.
+    *
+    * @param level The diagnostic level. Must not be {@code null}.
+    */
+   public void setDiagnosticLevel(DiagnosticLevel level)
+   {
+      this.diagnostics = Objects.requireNonNull(level, "Supplied diagnostic level must not be null.");
+   }
+
    public Set<ConnectedComponent> process() throws BinarizationException
    {
+      if (ccSet == null)
+         ccSet = findConnectedComponents();
+
       List<ConnectedComponent> candidates = performAreaThresholding(ccSet, 20);
       
       // TODO this still isn't right. We should perform in two or three passes, first extracting 
@@ -70,11 +107,19 @@ public class FletcherGraphicsSegmentation
    }
 
    private Set<ConnectedComponent> performTextIdentification(List<ConnectedComponent> candidates, double[] angleValues, double radialResolution)
+   {
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.HOUGH))
+      {
+         return findTextCandidates(candidates, angleValues, radialResolution);
+      }
+   }
+
+   private Set<ConnectedComponent> findTextCandidates(List<ConnectedComponent> candidates, double[] angleValues, double radialResolution)
    {
       HoughTransform<ConnectedComponent> transform = 
-            new HoughTransform<>(cc -> cc.getCentroid(), angleValues, radialResolution);
+            new HoughTransform<>(cc -> cc.getCentroid(), angleValues, radialResolution, proxy.getWidth(), proxy.getHeight());
       
-      candidates.stream().forEach(transform::addObservation);
+      transform.addAll(candidates);
       
       Set<ConnectedComponent> textCandidateCCs = new HashSet<>();  
       for (int thresh = 20; thresh > 2; thresh--)
@@ -82,8 +127,9 @@ public class FletcherGraphicsSegmentation
          Set<ConnectedComponent> textCC = findText(transform, thresh);
          if (textCC.isEmpty())
             continue;
-         printIntermediateText(textCC, thresh);
-         transform.remove(textCC);
+         if (diagnostics.includes(DiagnosticLevel.INTERMEDIATE))
+            printIntermediateText(textCC, thresh);
+         transform.removeAll(textCC);
          textCandidateCCs.addAll(textCC);
       }
       return textCandidateCCs;
@@ -162,11 +208,9 @@ public class FletcherGraphicsSegmentation
       // TODO check out histogram equalization: http://homepages.inf.ed.ac.uk/rbf/HIPR2/histeq.htm referenced from http://homepages.inf.ed.ac.uk/rbf/HIPR2/hough.htm
       //      see also http://www.massey.ac.nz/~mjjohnso/notes/59318/l11.html
       
-      Collection<HoughAccumulator<ConnectedComponent>> accumulators = transform.getAccumulators();
-      List<HoughAccumulator<ConnectedComponent>> filtered = accumulators.parallelStream()
-                     .filter(acc -> acc.size() > threshold)
-                     .sorted((a, b) -> Integer.compare(a.size(), b.size()))
-                     .collect(Collectors.toList());
+      // cells are visited largest first. The transform is not modified until all cells 
+      // above the threshold have been processed, so the order does not affect the result.
+      List<HoughAccumulator<ConnectedComponent>> filtered = transform.getAccumulatorsAbove(threshold);
       
       Set<ConnectedComponent> textChars = new HashSet<>();
       for (HoughAccumulator<ConnectedComponent> primayCell : filtered)
@@ -180,13 +224,19 @@ public class FletcherGraphicsSegmentation
                                 .sorted(new HoughLineComparator(theta))
                                 .collect(Collectors.toList());
          
-         List<Phrase> textString = performStringSegmentation(components, theta);
-         TextString str = new TextString(textString, theta);
+         TextString str;
+         try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.STRINGS))
+         {
+            List<Phrase> textString = performStringSegmentation(components, theta);
+            str = new TextString(textString, theta);
+         }
+         
          Set<ConnectedComponent> elements = str.getComponents();
          if (elements.isEmpty())
             continue;
          
-//         printTextStrings(referencePoint, elements);
+         if (diagnostics.includes(DiagnosticLevel.ALL))
+            printTextStrings(referencePoint, elements);
          textChars.addAll(elements);
       }
       
@@ -317,7 +367,8 @@ public class FletcherGraphicsSegmentation
 //         if (components.isEmpty())
 //            continue;
       
-//      generateHoughClusterImage(transform, primaryCell, fcluster);
+      if (diagnostics.includes(DiagnosticLevel.ALL))
+         generateHoughClusterImage(transform, primaryCell, fcluster);
       return components;
    }
 
@@ -655,14 +706,27 @@ public class FletcherGraphicsSegmentation
       
       return (theta) -> x * Math.cos(theta) + y * Math.sin(theta);
    }
-   private Set<ConnectedComponent> findConnectedComponents(BufferedImage image) throws BinarizationException
+   private Set<ConnectedComponent> findConnectedComponents() throws BinarizationException
    {
-      IntegralImage integralImage = IntegralImageImpl.create(image);
-      BinaryImage binaryImage = binarizer.binarize(integralImage);
-      ConnectedComponentFinder finder = new ConnectedComponentFinder(binaryImage, 100_000);
-      ConnectComponentSet components = finder.call();
+      // the two-pass extractor times binarization and labeling itself
+      Collection<? extends ConnectedComponent> components;
+      if (cache == null)
+      {
+         components = twoPassExtractor.findComponents(proxy.getImage());
+      }
+      else
+      {
+         try
+         {
+            components = cache.getComponents(proxy.getPath(), decoding, twoPassExtractor, proxy::getImage);
+         }
+         catch (IOException ex)
+         {
+            throw new IllegalStateException("Failed to read image [" + proxy.getPath() + "]", ex);
+         }
+      }
 
-      Set<ConnectedComponent> ccSet = components.asSet(); //.stream()
+      Set<ConnectedComponent> ccSet = new HashSet<>(components); //.stream()
 //            .filter(cc -> cc.getBounds().getArea() > minComponentSize)   
 //            .collect(Collectors.toSet());
 
@@ -1,27 +1,31 @@
 package edu.tamu.tcat.visualpage.wcsa.fletcher;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
 
-// intended for internal use
+/**
+ * A view of a single cell of a {@link HoughTransform}. The count and observations are
+ * read from the transform's cell arrays and reflect any observations that have been
+ * removed from the transform. Intended for internal use.
+ */
 public class HoughAccumulator<T>
 {
+   private final HoughTransform<T> transform;
+   private final int cellIx;
    private final int angleIx;
    private final int rhoIx;
-   private Set<T> observations = new HashSet<T>();
    
-   public HoughAccumulator(Integer rhoIx, Integer angleIx)
+   HoughAccumulator(HoughTransform<T> transform, int cellIx, int rhoIx, int angleIx)
    {
-      this.rhoIx = rhoIx.intValue();
-      this.angleIx = angleIx.intValue();
+      this.transform = transform;
+      this.cellIx = cellIx;
+      this.rhoIx = rhoIx;
+      this.angleIx = angleIx;
    }
    
    
    public int size()
    {
-      return observations.size();
+      return transform.size(cellIx);
    }
 
    public int getRhoIndex()
@@ -34,17 +38,8 @@ public class HoughAccumulator<T>
       return this.angleIx;
    }
    
-   public void add(T observation)
-   {
-      observations.add(observation);
-   }
-   public void remove(T observation)
-   {
-      observations.remove(observation);
-   }
-   
    public Collection<T> getObservations()
    {
-      return Collections.unmodifiableCollection(observations);
+      return transform.getObservations(cellIx);
    }
 }
\ No newline at end of file
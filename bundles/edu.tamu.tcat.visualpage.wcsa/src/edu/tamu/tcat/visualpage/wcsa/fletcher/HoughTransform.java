@@ -1,17 +1,17 @@
 package edu.tamu.tcat.visualpage.wcsa.fletcher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 import edu.tamu.tcat.analytics.image.region.Point;
 
 
@@ -25,18 +25,85 @@ import edu.tamu.tcat.analytics.image.region.Point;
  *  In the discrete form, a Hough transform is 
  *  represented as a two dimensional data structure over the angles of the 
  *  
+ *  <p>
+ *  Cells are stored densely. Cell counts are held in a single {@code int[]} indexed by
+ *  angle and rho and the observations that contribute to each cell are held in a compressed
+ *  (CSR-style) {@code int[]} of observation indices. These arrays are built lazily the first
+ *  time the cells are accessed after observations have been added. Removing an observation
+ *  decrements the counts of the cells it contributes to but does not alter the membership
+ *  arrays; removed observations are skipped when a cell's observations are retrieved.
+ *
+ *  <p>
+ *  The sine and cosine of each angle are computed once when the transform is created and
+ *  the rho index of each observation at each angle is computed once when it is added. These
+ *  cached indices are reused when the cell arrays are built and when the observation is
+ *  removed.
+ *
+ *  <p>
+ *  Non-empty cells are also kept in a bucket queue keyed on their size: cells of equal size
+ *  are linked together and the buckets are indexed by size. Removing an observation moves
+ *  each cell it contributes to into the next smaller bucket in constant time, so the cells
+ *  above a size threshold can be found (see {@link #getAccumulatorsAbove(int)}) without
+ *  scanning every cell of the transform.
+ *
+ *  <p>
+ *  Observations may be added and removed in bulk using {@link #addAll(Collection)} and
+ *  {@link #removeAll(Collection)}. For large batches, the rho indices of new observations
+ *  are computed in parallel and the cell arrays are built in parallel stripes, one angle per
+ *  task. Since every cell belongs to exactly one angle, the stripes write to disjoint
+ *  regions of the cell arrays and need no synchronization. Instances are otherwise not
+ *  thread safe.
+ *
+ *  <p>
+ *  The bounds of the rho axis are computed from the image size when it is supplied on
+ *  construction, otherwise from the range of the observed values.
+ *
  *  @see http://en.wikipedia.org/wiki/Hough_transform
  *
  * @param <T>
  */
 public class HoughTransform<T>
    {
-      private Table<Integer, Integer, HoughAccumulator<T>> accumulator;
       private final Function<T, Point> fn;
       private final double[] angles;
+      private final double[] cosines;
+      private final double[] sines;
       private final double radialResolution;
-//      private SortedSet<Integer> rhoValues;
-//      private SortedSet<Integer> thetaValues;
+
+      // minimum number of (observation, angle) pairs for which work is split across threads
+      private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+      // observations, indexed in the order they were added
+      private final List<T> observations = new ArrayList<>();
+      private final Map<T, Integer> observationIndex = new HashMap<>();
+      private final BitSet removed = new BitSet();
+      private int[] xs = new int[256];
+      private int[] ys = new int[256];
+
+      // rho index of each observation for each angle, indexed by obsIx * angles.length + angleIx
+      private int[] rhoIndices;
+
+      // bounds of the rho axis (in units of the radial resolution)
+      private final boolean fixedBounds;
+      private int minRhoIx;
+      private int numRho;
+
+      // dense cell storage, valid only when packed. Cells are indexed by
+      // angleIx * numRho + (rhoIx - minRhoIx)
+      private boolean packed = false;
+      private int[] counts;
+      private int[] offsets;
+      private int[] members;
+      private HoughAccumulator<T>[] cells;
+      private AngleColumn<T>[] columns;
+
+      // bucket queue of non-empty cells keyed on size. bucketHeads[n] is the first cell of
+      // size n and cells of equal size are doubly linked through nextCell/prevCell. Cells
+      // that are empty are not linked. maxSize is an upper bound on the largest cell size.
+      private int[] bucketHeads;
+      private int[] nextCell;
+      private int[] prevCell;
+      private int maxSize;
       
       /**
        * 
@@ -45,18 +112,7 @@ public class HoughTransform<T>
        */
       public HoughTransform(Function<T, Point> fn, double angularResolution, double radialResolution)
       {
-         
-         this.fn = fn;
-         accumulator = HashBasedTable.create();
-         this.radialResolution = radialResolution;
-         
-         int ix = 0;
-         int numAngles = (int)Math.ceil(Math.PI / angularResolution);
-         angles = new double[numAngles];
-         for (double theta = 0; theta < Math.PI; theta += angularResolution)
-         {
-            angles[ix++] = theta;
-         }
+         this(fn, generateAngles(angularResolution), radialResolution);
       }
 
       /**
@@ -67,11 +123,78 @@ public class HoughTransform<T>
        */
       public HoughTransform(Function<T, Point> fn, double[] angles, double radialResolution)
       {
-         
          this.fn = fn;
          this.angles = angles;
-         this.accumulator = HashBasedTable.create();
+         this.cosines = new double[angles.length];
+         this.sines = new double[angles.length];
+         this.radialResolution = radialResolution;
+         this.fixedBounds = false;
+
+         initialize();
+      }
+
+      /**
+       * Creates a transform for points that lie within an image of known size. The bounds of
+       * the transform are computed up front and all observations must fall within
+       * {@code [0, width] x [0, height]}.
+       *
+       * @param fn A function that converts input values of type {@code T} into {@link Point}s.
+       * @param angles An array of angles in the range {@code [0, PI)}. Must not be modified
+       *       by caller after creation.
+       * @param radialResolution
+       * @param width The width of the image.
+       * @param height The height of the image.
+       */
+      public HoughTransform(Function<T, Point> fn, double[] angles, double radialResolution, int width, int height)
+      {
+         this.fn = fn;
+         this.angles = angles;
+         this.cosines = new double[angles.length];
+         this.sines = new double[angles.length];
          this.radialResolution = radialResolution;
+         this.fixedBounds = true;
+
+         initialize();
+
+         int min = Integer.MAX_VALUE;
+         int max = Integer.MIN_VALUE;
+         int[][] corners = new int[][] { {0, 0}, {width, 0}, {0, height}, {width, height} };
+         for (int i = 0; i < angles.length; i++)
+         {
+            for (int[] corner : corners)
+            {
+               int rhoIx = toRhoIx(corner[0], corner[1], i);
+               min = Math.min(min, rhoIx);
+               max = Math.max(max, rhoIx);
+            }
+         }
+
+         this.minRhoIx = min;
+         this.numRho = (angles.length == 0) ? 0 : max - min + 1;
+      }
+
+      private void initialize()
+      {
+         for (int i = 0; i < angles.length; i++)
+         {
+            cosines[i] = Math.cos(angles[i]);
+            sines[i] = Math.sin(angles[i]);
+         }
+
+         rhoIndices = new int[xs.length * angles.length];
+      }
+
+      private static double[] generateAngles(double angularResolution)
+      {
+         int ix = 0;
+         int numAngles = (int)Math.ceil(Math.PI / angularResolution);
+         double[] angles = new double[numAngles];
+         for (double theta = 0; theta < Math.PI && ix < numAngles; theta += angularResolution)
+         {
+            angles[ix++] = theta;
+         }
+
+         return angles;
       }
 
       public double getRadialResolution()
@@ -79,9 +202,26 @@ public class HoughTransform<T>
          return radialResolution;
       }
 
+      /**
+       * Returns the column of cells that share the angle of the supplied cell. Columns are
+       * built on first use and shared until observations are next added.
+       *
+       * @param acc A cell of this transform.
+       * @return The column containing the supplied cell.
+       */
       public AngleColumn<T> getByAngle(HoughAccumulator<T> acc)
       {
-         return new AngleColumn<T>(acc.getAngleIndex(), accumulator);
+         pack();
+
+         int angleIx = acc.getAngleIndex();
+         AngleColumn<T> column = columns[angleIx];
+         if (column == null)
+         {
+            column = new AngleColumn<T>(this, angleIx);
+            columns[angleIx] = column;
+         }
+
+         return column;
       }
 
       /**
@@ -91,56 +231,240 @@ public class HoughTransform<T>
        */
       public Collection<HoughAccumulator<T>> getAccumulators()
       {
-         return accumulator.cellSet().stream()
-                     .map(cell -> cell.getValue())
-                     .collect(Collectors.toList());
+         pack();
+
+         List<HoughAccumulator<T>> result = new ArrayList<>();
+         for (int cellIx = 0; cellIx < counts.length; cellIx++)
+         {
+            if (offsets[cellIx + 1] > offsets[cellIx])
+               result.add(getCell(cellIx));
+         }
+
+         return result;
+      }
+
+      /**
+       * Returns the cells whose size is greater than a threshold. Cells are found using the
+       * size-keyed bucket queue, so the cost is proportional to the number of cells returned
+       * rather than the size of the transform.
+       *
+       * @param threshold The size that returned cells must exceed.
+       * @return The cells having more than {@code threshold} observations, in decreasing
+       *       order of size.
+       */
+      public List<HoughAccumulator<T>> getAccumulatorsAbove(int threshold)
+      {
+         pack();
+
+         while (maxSize > 0 && bucketHeads[maxSize] < 0)
+            maxSize--;
+
+         List<HoughAccumulator<T>> result = new ArrayList<>();
+         for (int size = maxSize; size > threshold && size > 0; size--)
+         {
+            for (int cellIx = bucketHeads[size]; cellIx >= 0; cellIx = nextCell[cellIx])
+            {
+               result.add(getCell(cellIx));
+            }
+         }
+
+         return result;
       }
 
       public void remove(Collection<T> toRemove)
       {
-         toRemove.stream().forEach(this::remove);
+         removeAll(toRemove);
+      }
+
+      /**
+       * Removes a collection of observations. Observations that are not present are ignored.
+       * When a large number of observations are removed, cell counts are decremented in
+       * parallel by angle and the size index is rebuilt once, rather than updating it for
+       * each observation.
+       *
+       * @param toRemove The observations to remove.
+       */
+      public void removeAll(Collection<T> toRemove)
+      {
+         if (!packed || (long)toRemove.size() * angles.length < counts.length)
+         {
+            toRemove.forEach(this::remove);
+            return;
+         }
+
+         int[] obsIxs = new int[toRemove.size()];
+         int sz = 0;
+         for (T observation : toRemove)
+         {
+            Integer ix = observationIndex.get(observation);
+            if (ix == null || removed.get(ix.intValue()))
+               continue;
+
+            removed.set(ix.intValue());
+            obsIxs[sz++] = ix.intValue();
+         }
+
+         int numRemoved = sz;
+         forEachAngle((long)numRemoved * angles.length, i -> {
+            for (int j = 0; j < numRemoved; j++)
+            {
+               counts[toCellIx(rhoIndices[obsIxs[j] * angles.length + i], i)]--;
+            }
+         });
+
+         buildSizeIndex();
       }
       
       public void remove(T observation)
       {
-         Point p = fn.apply(observation);
-         int x = p.getX();
-         int y = p.getY();
+         Integer ix = observationIndex.get(observation);
+         if (ix == null || removed.get(ix.intValue()))
+            return;
 
-         IntStream.range(0, angles.length).forEach(i -> {
-            double theta = angles[i];
-            double rho = x * Math.cos(theta) + y * Math.sin(theta);
-            Integer rhoIx = Integer.valueOf((int)Math.floor(rho / radialResolution));
+         int obsIx = ix.intValue();
+         removed.set(obsIx);
+         if (!packed)
+            return;
             
-            HoughAccumulator<T> acc = accumulator.get(rhoIx, i);
-            if (acc != null)
-               acc.remove(observation);
-         });
+         int base = obsIx * angles.length;
+         for (int i = 0; i < angles.length; i++)
+         {
+            int cellIx = toCellIx(rhoIndices[base + i], i);
+            unlink(cellIx);
+            if (--counts[cellIx] > 0)
+               link(cellIx);
+         }
+      }
+
+      /**
+       * Adds a cell to the bucket for its current size.
+       */
+      private void link(int cellIx)
+      {
+         int head = bucketHeads[counts[cellIx]];
+         prevCell[cellIx] = -1;
+         nextCell[cellIx] = head;
+         if (head >= 0)
+            prevCell[head] = cellIx;
+
+         bucketHeads[counts[cellIx]] = cellIx;
+      }
+
+      /**
+       * Removes a cell from the bucket for its current size.
+       */
+      private void unlink(int cellIx)
+      {
+         int prev = prevCell[cellIx];
+         int next = nextCell[cellIx];
+         if (prev >= 0)
+            nextCell[prev] = next;
+         else
+            bucketHeads[counts[cellIx]] = next;
+
+         if (next >= 0)
+            prevCell[next] = prev;
       }
 
       public void addObservation(T observation)
       {
-//         rhoValues = null;
-//         thetaValues = null;
+         int obsIx = register(observation);
+         if (obsIx >= 0)
+            computeRhoIndices(obsIx, observation);
+      }
          
+      /**
+       * Adds a collection of observations. For large collections, the points and rho indices
+       * of the new observations are computed in parallel, so the function supplied to
+       * convert observations to points must be safe to call concurrently.
+       *
+       * @param toAdd The observations to add.
+       */
+      public void addAll(Collection<T> toAdd)
+      {
+         int first = observations.size();
+         ensureCapacity(first + toAdd.size());
+         for (T observation : toAdd)
+         {
+            register(observation);
+         }
+
+         IntStream range = IntStream.range(first, observations.size());
+         if ((long)(observations.size() - first) * angles.length >= PARALLEL_THRESHOLD)
+            range = range.parallel();
+
+         range.forEach(obsIx -> computeRhoIndices(obsIx, observations.get(obsIx)));
+      }
+
+      /**
+       * Assigns an index to a new observation, or restores an observation that was
+       * previously removed.
+       *
+       * @return The index of the observation, or -1 if the observation was already present.
+       *       The rho indices of the returned observation must be computed by the caller.
+       */
+      private int register(T observation)
+      {
+         Integer ix = observationIndex.get(observation);
+         if (ix != null)
+         {
+            // re-adding a previously removed observation
+            if (removed.get(ix.intValue()))
+            {
+               removed.clear(ix.intValue());
+               packed = false;
+            }
+
+            return -1;
+         }
+
+         int obsIx = observations.size();
+         ensureCapacity(obsIx + 1);
+         observations.add(observation);
+         observationIndex.put(observation, Integer.valueOf(obsIx));
+         packed = false;
+         return obsIx;
+      }
+
+      private void ensureCapacity(int numObs)
+      {
+         if (numObs <= xs.length)
+            return;
+
+         int sz = Math.max(numObs, xs.length * 2);
+         xs = Arrays.copyOf(xs, sz);
+         ys = Arrays.copyOf(ys, sz);
+         rhoIndices = Arrays.copyOf(rhoIndices, sz * angles.length);
+      }
+
+      private void computeRhoIndices(int obsIx, T observation)
+      {
          Point p = fn.apply(observation);
          int x = p.getX();
          int y = p.getY();
+         xs[obsIx] = x;
+         ys[obsIx] = y;
 
-         IntStream.range(0, angles.length).forEach(i -> {
-            double theta = angles[i];
-            double rho = x * Math.cos(theta) + y * Math.sin(theta);
-            Integer rhoIx = Integer.valueOf((int)Math.floor(rho / radialResolution));
+         int base = obsIx * angles.length;
+         for (int i = 0; i < angles.length; i++)
+         {
+            rhoIndices[base + i] = toRhoIx(x, y, i);
+         }
+      }
             
-            HoughAccumulator<T> acc = accumulator.get(rhoIx, i);
-            if (acc == null)
-            {
-               acc = new HoughAccumulator<T>(rhoIx, i);
-               accumulator.put(rhoIx, i, acc);
-            }
+      /**
+       * Applies a task to the index of each angle. The task is run in parallel if the amount
+       * of work is large enough to benefit.
+       *
+       * @param work The approximate number of (observation, angle) pairs to be processed.
+       */
+      private void forEachAngle(long work, IntConsumer task)
+      {
+         IntStream range = IntStream.range(0, angles.length);
+         if (work >= PARALLEL_THRESHOLD)
+            range = range.parallel();
             
-            acc.add(observation);
-         });
+         range.forEach(task);
       }
       
       private int toAngleIx(double theta)
@@ -162,11 +486,15 @@ public class HoughTransform<T>
       
       public HoughAccumulator<T> getCell(HoughPoint p)
       {
+         pack();
+
          int thetaIx = toAngleIx(p.theta);
-         int rhoIx = Integer.valueOf((int)Math.floor(p.rho / radialResolution));
+         int rhoIx = (int)Math.floor(p.rho / radialResolution);
+         if (thetaIx < 0 || rhoIx < minRhoIx || rhoIx >= minRhoIx + numRho)
+            return null;
          
-         // TODO check existence 
-         return accumulator.get(Integer.valueOf(rhoIx), Integer.valueOf(thetaIx));
+         int cellIx = toCellIx(rhoIx, thetaIx);
+         return (offsets[cellIx + 1] > offsets[cellIx]) ? getCell(cellIx) : null;
       }
       
       public HoughPoint getReferencePoint(HoughAccumulator<T> cell)
@@ -176,55 +504,243 @@ public class HoughTransform<T>
          
          return new HoughPoint(rho, theta);
       }
-//      
-//      public void pack() {
-//         rhoValues = new TreeSet<>(accumulator.rowKeySet());
-//         thetaValues = new TreeSet<>(accumulator.columnKeySet());
-//      }
       
       /**
-       * Represents a column of the two dimensional hough space. The values in this column 
+       * @return The number of (non-removed) observations that contribute to the
+       *       identified cell.
+       */
+      int size(int cellIx)
+      {
+         return counts[cellIx];
+      }
+
+      /**
+       * @return The (non-removed) observations that contribute to the identified cell.
+       */
+      Collection<T> getObservations(int cellIx)
+      {
+         int start = offsets[cellIx];
+         int end = offsets[cellIx + 1];
+         List<T> result = new ArrayList<>(counts[cellIx]);
+         for (int i = start; i < end; i++)
+         {
+            int obsIx = members[i];
+            if (!removed.get(obsIx))
+               result.add(observations.get(obsIx));
+         }
+
+         return Collections.unmodifiableList(result);
+      }
+
+      private HoughAccumulator<T> getCell(int cellIx)
+      {
+         HoughAccumulator<T> cell = cells[cellIx];
+         if (cell == null)
+         {
+            int angleIx = cellIx / numRho;
+            int rhoIx = minRhoIx + (cellIx % numRho);
+            cell = new HoughAccumulator<>(this, cellIx, rhoIx, angleIx);
+            cells[cellIx] = cell;
+         }
+
+         return cell;
+      }
+
+      private int toRhoIx(int x, int y, int angleIx)
+      {
+         double rho = x * cosines[angleIx] + y * sines[angleIx];
+         return (int)Math.floor(rho / radialResolution);
+      }
+
+      private int toCellIx(int rhoIx, int angleIx)
+      {
+         return angleIx * numRho + (rhoIx - minRhoIx);
+      }
+
+      /**
+       * Builds the dense cell arrays if observations have been added since they were
+       * last built.
+       */
+      @SuppressWarnings("unchecked")
+      private void pack()
+      {
+         if (packed)
+            return;
+
+         int numObs = observations.size();
+         if (!fixedBounds)
+            computeBounds(numObs);
+
+         int numCells = angles.length * numRho;
+         counts = new int[numCells];
+         offsets = new int[numCells + 1];
+         cells = new HoughAccumulator[numCells];
+         columns = new AngleColumn[angles.length];
+
+         // first pass counts members for each cell, second pass fills the membership array.
+         // Both passes are striped by angle; each angle owns a contiguous block of cells.
+         long work = (long)numObs * angles.length;
+         forEachAngle(work, i -> {
+            for (int obsIx = 0; obsIx < numObs; obsIx++)
+            {
+               if (removed.get(obsIx))
+                  continue;
+
+               int rhoIx = rhoIndices[obsIx * angles.length + i];
+               if (rhoIx < minRhoIx || rhoIx >= minRhoIx + numRho)
+                  throw new IllegalStateException("Observation [" + observations.get(obsIx) + "] at "
+                        + "(" + xs[obsIx] + ", " + ys[obsIx] + ") lies outside the bounds of this transform.");
+
+               counts[toCellIx(rhoIx, i)]++;
+            }
+         });
+
+         for (int cellIx = 0; cellIx < numCells; cellIx++)
+         {
+            offsets[cellIx + 1] = offsets[cellIx] + counts[cellIx];
+         }
+
+         members = new int[offsets[numCells]];
+         int[] next = Arrays.copyOf(offsets, numCells);
+         forEachAngle(work, i -> {
+            for (int obsIx = 0; obsIx < numObs; obsIx++)
+            {
+               if (removed.get(obsIx))
+                  continue;
+
+               int cellIx = toCellIx(rhoIndices[obsIx * angles.length + i], i);
+               members[next[cellIx]++] = obsIx;
+            }
+         });
+
+         buildSizeIndex();
+         packed = true;
+      }
+
+      /**
+       * Rebuilds the size-keyed bucket queue from the current cell counts.
+       */
+      private void buildSizeIndex()
+      {
+         int numCells = counts.length;
+         maxSize = 0;
+         for (int cellIx = 0; cellIx < numCells; cellIx++)
+         {
+            maxSize = Math.max(maxSize, counts[cellIx]);
+         }
+
+         bucketHeads = new int[maxSize + 1];
+         if (nextCell == null || nextCell.length != numCells)
+         {
+            nextCell = new int[numCells];
+            prevCell = new int[numCells];
+         }
+
+         Arrays.fill(bucketHeads, -1);
+         for (int cellIx = numCells - 1; cellIx >= 0; cellIx--)
+         {
+            if (counts[cellIx] > 0)
+               link(cellIx);
+         }
+      }
+
+      private void computeBounds(int numObs)
+      {
+         int min = Integer.MAX_VALUE;
+         int max = Integer.MIN_VALUE;
+         for (int obsIx = 0; obsIx < numObs; obsIx++)
+         {
+            if (removed.get(obsIx))
+               continue;
+
+            int base = obsIx * angles.length;
+            for (int i = 0; i < angles.length; i++)
+            {
+               int rhoIx = rhoIndices[base + i];
+               min = Math.min(min, rhoIx);
+               max = Math.max(max, rhoIx);
+            }
+         }
+
+         minRhoIx = (max < min) ? 0 : min;
+         numRho = (max < min) ? 0 : max - min + 1;
+      }
+
+      /**
+       * Represents a column of the two dimensional hough space: the cells for a single angle
+       * that have had observations added to them, ordered by rho. Cells whose observations
+       * have all been removed remain in the column.
+       *
+       * <p>
+       * The rho indices of the column are held in a sorted {@code int[]} so that range
+       * queries use binary search, and the position of each rho index within the column is
+       * held in a lookup table over the rho axis so that {@link #indexOf(HoughAccumulator)}
+       * runs in constant time.
        */
       public static class AngleColumn<T>
       {
-         private double angle;
-         private int angleIx;
+         private final HoughTransform<T> transform;
+         private final int angleIx;
          
-         private List<Integer> rhoValues;
-         private final Map<Integer, HoughAccumulator<T>> values;
-         private Table<Integer, Integer, HoughAccumulator<T>> accumulator;
+         // rho indices of the cells in this column, in ascending order
+         private final int[] rhoValues;
          
-         public AngleColumn(int angleIx, Table<Integer, Integer, HoughAccumulator<T>> accumulator)
+         // position within rhoValues, indexed by rhoIx - transform.minRhoIx. -1 if absent
+         private final int[] positions;
+
+         AngleColumn(HoughTransform<T> transform, int angleIx)
          {
+            this.transform = transform;
             this.angleIx = angleIx;
-            this.accumulator = accumulator;
-            this.values = accumulator.column(angleIx);
-            this.rhoValues = new ArrayList<Integer>();
-            for (Integer i : new TreeSet<>(values.keySet()))
+
+            int numRho = transform.numRho;
+            int base = angleIx * numRho;
+            int[] values = new int[numRho];
+            int sz = 0;
+            positions = new int[numRho];
+            for (int i = 0; i < numRho; i++)
             {
-               rhoValues.add(i);
+               int cellIx = base + i;
+               if (transform.offsets[cellIx + 1] > transform.offsets[cellIx])
+               {
+                  positions[i] = sz;
+                  values[sz++] = transform.minRhoIx + i;
+               }
+               else
+               {
+                  positions[i] = -1;
+               }
             }
+
+            rhoValues = Arrays.copyOf(values, sz);
          }
          
          public int size()
          {
-            return rhoValues.size();
+            return rhoValues.length;
          }
          
          public HoughAccumulator<T> get(int ix)
          {
-            Integer accIx = rhoValues.get(Integer.valueOf(ix));
-            return values.get(accIx);     // TODO might prevent null?
+            return transform.getCell(transform.toCellIx(rhoValues[ix], angleIx));
          }
          
+         /**
+          * @return The cells of this column with rho indices in the range
+          *       {@code [minRhoIx, maxRhoIx]}, ordered by rho.
+          */
          public List<HoughAccumulator<T>> getRange(int minRhoIx, int maxRhoIx)
          {
-            return values.keySet().stream()
-               .mapToInt(Integer::intValue)
-               .filter(key -> (key >= minRhoIx && key <= maxRhoIx))
-               .sorted()
-               .mapToObj(key -> values.get(Integer.valueOf(key)))
-               .collect(Collectors.toList());
+            int start = lowerBound(minRhoIx);
+            int end = lowerBound(maxRhoIx + 1);
+
+            List<HoughAccumulator<T>> result = new ArrayList<>(Math.max(0, end - start));
+            for (int i = start; i < end; i++)
+            {
+               result.add(transform.getCell(transform.toCellIx(rhoValues[i], angleIx)));
+            }
+
+            return result;
          }
          
          public int indexOf(HoughAccumulator<T> acc)
@@ -233,7 +749,28 @@ public class HoughTransform<T>
             if (ix != angleIx)
                throw new IllegalArgumentException("Invalid accumulator. Expected angle index of [" + angleIx + "] but found [" + ix +"]");
             
-            return rhoValues.indexOf(Integer.valueOf(acc.getRhoIndex()));
+            int offset = acc.getRhoIndex() - transform.minRhoIx;
+            return (offset < 0 || offset >= positions.length) ? -1 : positions[offset];
+         }
+
+         /**
+          * @return The position of the first rho index that is not less than the supplied
+          *       value, or {@link #size()} if there is none.
+          */
+         private int lowerBound(int rhoIx)
+         {
+            int low = 0;
+            int high = rhoValues.length;
+            while (low < high)
+            {
+               int mid = (low + high) >>> 1;
+               if (rhoValues[mid] < rhoIx)
+                  low = mid + 1;
+               else
+                  high = mid;
+            }
+
+            return low;
          }
       }
    }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package edu.tamu.tcat.visualpage.wcsa.importer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import javax.imageio.ImageIO;
+
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+
+/**
+ * Encodes and writes output images on a dedicated pool of threads so that image encoding
+ * does not delay page analysis.
+ *
+ * <p>
+ * The number of images that have been submitted but not yet written is bounded. Since each
+ * pending write holds a full image, this also bounds the memory used by queued output.
+ * Calls to {@link #write(Path, String, BufferedImage)} block once this limit is reached,
+ * slowing analysis down to the rate at which output can be written.
+ *
+ * <p>
+ * Output directories are created at most once per writer. Each write returns a future that
+ * completes once the image has been written, so that callers may tell when their output is
+ * on disk. A write that fails completes its future exceptionally and is also reported to
+ * {@code System.err} and counted; it does not affect other writes.
+ *
+ * <p>
+ * Write latencies are recorded to the {@link MetricsRegistry#WRITE} histogram of the
+ * default registry and the number of pending writes to the
+ * {@link MetricsRegistry#WRITE_QUEUE_DEPTH} gauge.
+ */
+public class AsyncImageWriter implements AutoCloseable
+{
+   private final ExecutorService encoders;
+   private final Semaphore pending;
+   private final int maxPending;
+   private final Set<Path> createdDirs = ConcurrentHashMap.newKeySet();
+   private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+   private final LongSupplier queueDepth = this::getPendingCount;
+
+   private final AtomicInteger failed = new AtomicInteger();
+
+   /**
+    * @param numThreads The number of threads to use to encode images. Must be greater than 0.
+    * @param maxPending The maximum number of images that may be waiting to be written at
+    *       any one time. Must be greater than 0.
+    */
+   public AsyncImageWriter(int numThreads, int maxPending)
+   {
+      if (numThreads <= 0)
+         throw new IllegalArgumentException("Number of encoder threads [" + numThreads + "] must be greater than 0.");
+      if (maxPending <= 0)
+         throw new IllegalArgumentException("Maximum number of pending writes [" + maxPending + "] must be greater than 0.");
+
+      this.maxPending = maxPending;
+      this.pending = new Semaphore(maxPending);
+      this.encoders = Executors.newFixedThreadPool(numThreads, new EncoderThreadFactory());
+
+      metrics.registerGauge(MetricsRegistry.WRITE_QUEUE_DEPTH, queueDepth);
+   }
+
+   /**
+    * Schedules an image to be written. Blocks while the maximum number of writes are
+    * pending. The supplied image must not be modified after it has been submitted.
+    *
+    * @param file The file to write. Its parent directory will be created if necessary.
+    * @param fmt The informal name of the format to write, as used by {@link ImageIO}.
+    * @param image The image to write.
+    * @return A future that completes once the image has been written, or completes
+    *       exceptionally if it could not be written.
+    * @throws InterruptedException If interrupted while waiting for space in the queue.
+    */
+   public CompletableFuture<Void> write(Path file, String fmt, BufferedImage image) throws InterruptedException
+   {
+      Objects.requireNonNull(image, "Supplied image must not be null.");
+
+      CompletableFuture<Void> result = new CompletableFuture<>();
+      pending.acquire();
+      try
+      {
+         encoders.execute(() -> {
+            try
+            {
+               writeNow(file, fmt, image);
+               result.complete(null);
+            }
+            catch (Throwable ex)
+            {
+               // errors too, since the caller would otherwise wait on this write forever
+               failed.incrementAndGet();
+               System.err.println("Failed to write image [" + file + "]: " + ex);
+               result.completeExceptionally(ex);
+            }
+            finally
+            {
+               pending.release();
+            }
+         });
+      }
+      catch (RejectedExecutionException ex)
+      {
+         pending.release();
+         throw new IllegalStateException("This image writer has been closed.", ex);
+      }
+
+      return result;
+   }
+
+   /**
+    * Blocks until all images submitted before this call have been written.
+    *
+    * @throws InterruptedException If interrupted while waiting.
+    */
+   public void flush() throws InterruptedException
+   {
+      pending.acquire(maxPending);
+      pending.release(maxPending);
+   }
+
+   /**
+    * @return The number of images that have been submitted but not yet written.
+    */
+   public int getPendingCount()
+   {
+      return maxPending - pending.availablePermits();
+   }
+
+   /**
+    * @return The number of images that could not be written.
+    */
+   public int getFailedCount()
+   {
+      return failed.get();
+   }
+
+   /**
+    * Waits for all pending images to be written and shuts down the encoder threads.
+    */
+   @Override
+   public void close()
+   {
+      try
+      {
+         flush();
+         encoders.shutdown();
+         encoders.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+      }
+      finally
+      {
+         metrics.removeGauge(MetricsRegistry.WRITE_QUEUE_DEPTH, queueDepth);
+         encoders.shutdown();
+      }
+   }
+
+   private void writeNow(Path file, String fmt, BufferedImage image) throws IOException
+   {
+      Path dir = file.toAbsolutePath().getParent();
+      if (dir != null && !createdDirs.contains(dir))
+      {
+         Files.createDirectories(dir);
+         createdDirs.add(dir);
+      }
+
+      try (MetricsRegistry.Timer timer = metrics.time(MetricsRegistry.WRITE))
+      {
+         if (!ImageIO.write(image, fmt, file.toFile()))
+            throw new IOException("No writer is available for format [" + fmt + "].");
+      }
+   }
+
+   private static class EncoderThreadFactory implements ThreadFactory
+   {
+      private final AtomicInteger threadId = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "wcsa-image-encoder-" + threadId.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
@@ -1,65 +1,334 @@
 package edu.tamu.tcat.visualpage.wcsa.importer;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.imageio.ImageIO;
 
-public class DirectoryImporter 
+/**
+ * Supplies {@link ImageProxy}s for the image files found within a set of directories.
+ *
+ * <p>
+ * Directories are walked lazily. Adding a directory simply records it; its contents are
+ * listed only once iteration reaches it, so pages from the first directory are available
+ * before later directories have been read. Directories are visited in the order in which
+ * they were added, and the entries of each directory are visited in sorted order with
+ * sub-directories walked depth-first. The order of the returned proxies is therefore stable
+ * across runs.
+ *
+ * <p>
+ * Each page is returned at most once per traversal, even if the same directory is added
+ * twice or added directories overlap. Symbolic links to directories are not followed
+ * below the added directories, so links that form cycles are not walked.
+ *
+ * <p>
+ * This class is itself an {@link Iterator} over all pages of the added directories. The
+ * {@link #iterator()} and {@link #stream()} methods provide independent traversals.
+ * Instances are not thread safe.
+ */
+public class DirectoryImporter implements Iterator<ImageProxy>
 {
    private Path outputPath;
    private Path inputBase;
-   private Set<Path> imageFiles = new HashSet<>();
+   private List<Path> directories = new ArrayList<>();
+   private Iterator<ImageProxy> cursor;
+   private volatile ImageLoader loader = ImageLoader.DEFAULT;
+   private volatile AsyncImageWriter writer;
+   private Predicate<Path> directoryFilter = dir -> true;
 
    public DirectoryImporter(Path inputBase, Path outputPath)
    {
       this.inputBase = inputBase;
       this.outputPath = outputPath;
    }
-   
+
+   /**
+    * Adds a directory to be searched for image files. The directory will not be read until
+    * iteration reaches it.
+    *
+    * @param dir The directory to add.
+    * @throws IOException If the directory does not exist.
+    */
    public void addDirectory(Path dir) throws IOException
    {
-      Set<Path> imFiles = Files.walk(dir)
-                               .filter(DirectoryImporter::isImageFile)
-                               .collect(Collectors.toSet());
-      imageFiles.addAll(imFiles);
+      if (!Files.exists(dir))
+         throw new NoSuchFileException(dir.toString());
+
+      directories.add(dir);
+   }
+
+   /**
+    * Sets a filter that decides whether each added directory is walked. The filter is
+    * applied lazily, when iteration reaches the directory, and is applied once per
+    * traversal. When called for a directory, all pages of the previously added directory
+    * have already been returned.
+    *
+    * @param filter The filter. Must not be {@code null}.
+    */
+   public void setDirectoryFilter(Predicate<Path> filter)
+   {
+      this.directoryFilter = Objects.requireNonNull(filter, "Supplied directory filter must not be null.");
+   }
+
+   /**
+    * Sets the loader used to decode the images of pages supplied by this importer. By
+    * default, images are decoded in full using {@link ImageLoader#DEFAULT}.
+    *
+    * @param loader The loader to use. Must not be {@code null}.
+    */
+   public void setImageLoader(ImageLoader loader)
+   {
+      this.loader = Objects.requireNonNull(loader, "Supplied image loader must not be null.");
    }
-   
+
+   /**
+    * @return The loader used to decode the images of pages supplied by this importer.
+    */
+   public ImageLoader getImageLoader()
+   {
+      return loader;
+   }
+
+   /**
+    * Sets the writer used to write output images for pages supplied by this importer. By
+    * default, output images are written synchronously by the calling thread.
+    *
+    * @param writer The writer to use. May be {@code null} to write synchronously.
+    */
+   public void setImageWriter(AsyncImageWriter writer)
+   {
+      this.writer = writer;
+   }
+
+   /**
+    * @return The writer used to write output images, or {@code null} if output images are
+    *       written synchronously.
+    */
+   public AsyncImageWriter getImageWriter()
+   {
+      return writer;
+   }
+
+   /**
+    * @return All pages of the added directories. Note that this walks every directory
+    *       before returning. Prefer {@link #stream()} or {@link #iterator()} for large
+    *       collections.
+    */
    public Set<ImageProxy> getProxies()
    {
-      return imageFiles.parallelStream().map(p -> new ImageProxy(this, p)).collect(Collectors.toSet());
+      return stream().collect(Collectors.toSet());
+   }
+
+   /**
+    * @return A new iterator over the pages of the added directories, independent of the
+    *       iteration state of this importer.
+    */
+   public Iterator<ImageProxy> iterator()
+   {
+      return new PageWalker();
+   }
+
+   /**
+    * @return A sequential, ordered stream over the pages of the added directories.
+    */
+   public Stream<ImageProxy> stream()
+   {
+      int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), characteristics), false);
    }
-   
+
+   @Override
+   public boolean hasNext()
+   {
+      if (cursor == null)
+         cursor = iterator();
+
+      return cursor.hasNext();
+   }
+
+   @Override
+   public ImageProxy next()
+   {
+      if (cursor == null)
+         cursor = iterator();
+
+      return cursor.next();
+   }
+
+   /**
+    * @param proxy A page supplied by this importer.
+    * @return An identifier for the page that is stable across runs: the path of its image
+    *       file relative to the input base directory, using {@code /} as the separator.
+    */
+   public String getPageId(ImageProxy proxy)
+   {
+      Path relPath = inputBase.relativize(proxy.getPath());
+      return relPath.toString().replace(relPath.getFileSystem().getSeparator(), "/");
+   }
+
    public Path getOutputPath(ImageProxy proxy)
    {
       String filename = proxy.getFilename();
       if (filename.lastIndexOf('.') > 0)
          filename = filename.substring(0, filename.lastIndexOf('.') + 1);
-      
+
       Path relPath = inputBase.relativize(proxy.getPath().getParent());
       Path imageOutputPath = outputPath.resolve(relPath).resolve(filename);
       return imageOutputPath;
    }
-   
+
    private final static HashSet<String> suffixes = new HashSet<>();
    static {
       suffixes.addAll(Arrays.asList(ImageIO.getReaderFileSuffixes()));
    }
-   
+
    private static boolean isImageFile(Path p)
    {
       if (!Files.isReadable(p))
          return false;
-      
+
       String fName = p.getFileName().toString();
       int ix = fName.lastIndexOf(".");
-      
+
       String suffix = (ix > 0) ? fName.substring(ix + 1) : "";
       return !suffix.isEmpty() && suffixes.contains(suffix);
    }
+
+   /**
+    * Walks the added directories depth-first, listing each directory only when it is
+    * reached. Directories that have already been walked, and pages that have already been
+    * returned, are skipped.
+    */
+   private class PageWalker implements Iterator<ImageProxy>
+   {
+      private int dirIx = 0;
+      private final Deque<Iterator<Path>> stack = new ArrayDeque<>();
+      private final Set<Path> visited = new HashSet<>();
+      private final Set<Path> pages = new HashSet<>();
+      private ImageProxy nextProxy;
+
+      @Override
+      public boolean hasNext()
+      {
+         if (nextProxy == null)
+            nextProxy = advance();
+
+         return nextProxy != null;
+      }
+
+      @Override
+      public ImageProxy next()
+      {
+         if (!hasNext())
+            throw new NoSuchElementException();
+
+         ImageProxy result = nextProxy;
+         nextProxy = null;
+         return result;
+      }
+
+      private ImageProxy advance()
+      {
+         while (true)
+         {
+            if (stack.isEmpty())
+            {
+               if (dirIx >= directories.size())
+                  return null;
+
+               Path root = directories.get(dirIx++);
+               if (!directoryFilter.test(root))
+                  continue;
+
+               if (!Files.isDirectory(root))
+               {
+                  if (isImageFile(root) && pages.add(root.toAbsolutePath().normalize()))
+                     return new ImageProxy(DirectoryImporter.this, root);
+                  continue;
+               }
+
+               if (visit(root))
+                  stack.push(list(root));
+               continue;
+            }
+
+            Iterator<Path> entries = stack.peek();
+            if (!entries.hasNext())
+            {
+               stack.pop();
+               continue;
+            }
+
+            Path p = entries.next();
+            if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))
+            {
+               if (visit(p))
+                  stack.push(list(p));
+            }
+            else if (isImageFile(p) && pages.add(p.toAbsolutePath().normalize()))
+            {
+               return new ImageProxy(DirectoryImporter.this, p);
+            }
+         }
+      }
+
+      /**
+       * @return {@code true} if the directory has not yet been walked by this traversal.
+       */
+      private boolean visit(Path dir)
+      {
+         try
+         {
+            return visited.add(dir.toRealPath());
+         }
+         catch (IOException e)
+         {
+            // HACK skip unreadable directories rather than aborting the entire run.
+            System.err.println("Failed to read directory [" + dir + "]: " + e);
+            return false;
+         }
+      }
+
+      private Iterator<Path> list(Path dir)
+      {
+         List<Path> entries = new ArrayList<>();
+         try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir))
+         {
+            for (Path p : stream)
+            {
+               entries.add(p);
+            }
+         }
+         catch (IOException e)
+         {
+            // HACK skip unreadable directories rather than aborting the entire run.
+            System.err.println("Failed to read directory [" + dir + "]: " + e);
+            return Collections.<Path>emptyList().iterator();
+         }
+
+         Collections.sort(entries);
+         return entries.iterator();
+      }
+   }
 }
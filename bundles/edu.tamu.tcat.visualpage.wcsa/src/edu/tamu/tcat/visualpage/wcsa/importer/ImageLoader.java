@@ -0,0 +1,28 @@
+package edu.tamu.tcat.visualpage.wcsa.importer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decodes the image stored in a file. Used by {@link ImageProxy} to load page images.
+ * Implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface ImageLoader
+{
+   /**
+    * Decodes the full image at its native resolution and color model using {@link ImageIO}.
+    */
+   ImageLoader DEFAULT = file -> ImageIO.read(file.toFile());
+
+   /**
+    * @param file The file to be read.
+    * @return The decoded image or {@code null} if no registered reader is able to decode
+    *       the file.
+    * @throws IOException If the image could not be read.
+    */
+   BufferedImage load(Path file) throws IOException;
+}
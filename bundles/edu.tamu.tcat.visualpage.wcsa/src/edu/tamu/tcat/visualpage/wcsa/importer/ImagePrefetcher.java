@@ -0,0 +1,168 @@
+package edu.tamu.tcat.visualpage.wcsa.importer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes upcoming pages ahead of their use on a dedicated pool of I/O threads so that page
+ * analysis can overlap with disk reads and image decoding.
+ *
+ * <p>
+ * Wraps a source of {@link ImageProxy}s (typically a {@link DirectoryImporter}). Up to
+ * {@code lookahead} pages beyond the one most recently returned are decoded in the
+ * background. Calls to {@link ImageProxy#getImage()} on a returned proxy wait for its
+ * background decode rather than starting a new one.
+ *
+ * <p>
+ * The memory held by decoded rasters is limited by a byte budget. A decoded page counts
+ * against the budget until its proxy is closed. No new decode is started while the budget
+ * is exhausted. Since the size of a page is not known until it has been decoded, decodes
+ * that are already running may take the total over the budget by up to {@code lookahead}
+ * pages. The next page is always made available, even if the budget is exhausted, so that
+ * iteration never stalls.
+ *
+ * <p>
+ * Iteration is not thread safe and should be performed by a single thread.
+ */
+public class ImagePrefetcher implements Iterator<ImageProxy>, AutoCloseable
+{
+   private final Iterator<ImageProxy> source;
+   private final int lookahead;
+   private final long byteBudget;
+   private final ExecutorService ioPool;
+
+   private final Deque<ImageProxy> queue = new ArrayDeque<>();
+   private final AtomicLong bytesInUse = new AtomicLong();
+
+   /**
+    * @param source The pages to be decoded.
+    * @param lookahead The maximum number of pages to decode ahead of the consumer. Must
+    *       not be negative.
+    * @param byteBudget The maximum number of bytes of decoded raster data to hold for
+    *       prefetched pages that have not yet been closed.
+    * @param numThreads The number of threads to use for decoding. Must be greater than 0.
+    */
+   public ImagePrefetcher(Iterator<ImageProxy> source, int lookahead, long byteBudget, int numThreads)
+   {
+      if (lookahead < 0)
+         throw new IllegalArgumentException("Lookahead [" + lookahead + "] must not be negative.");
+      if (numThreads <= 0)
+         throw new IllegalArgumentException("Number of decoder threads [" + numThreads + "] must be greater than 0.");
+
+      this.source = source;
+      this.lookahead = lookahead;
+      this.byteBudget = byteBudget;
+      this.ioPool = Executors.newFixedThreadPool(numThreads, new DecoderThreadFactory());
+   }
+
+   @Override
+   public boolean hasNext()
+   {
+      fill();
+      return !queue.isEmpty();
+   }
+
+   @Override
+   public ImageProxy next()
+   {
+      fill();
+      if (queue.isEmpty())
+         throw new NoSuchElementException();
+
+      ImageProxy proxy = queue.poll();
+      fill();
+      return proxy;
+   }
+
+   /**
+    * @return The number of bytes of decoded raster data currently held by prefetched pages.
+    */
+   public long getBytesInUse()
+   {
+      return bytesInUse.get();
+   }
+
+   /**
+    * Stops decoding. Pages that have been prefetched but not returned are closed.
+    */
+   @Override
+   public void close()
+   {
+      queue.forEach(ImageProxy::close);
+      queue.clear();
+
+      ioPool.shutdown();
+      try
+      {
+         ioPool.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private void fill()
+   {
+      // always hold at least one page so that the consumer can make progress
+      while (source.hasNext() && (queue.isEmpty() || (queue.size() <= lookahead && bytesInUse.get() < byteBudget)))
+      {
+         ImageProxy proxy = source.next();
+         prefetch(proxy);
+         queue.add(proxy);
+      }
+   }
+
+   private void prefetch(ImageProxy proxy)
+   {
+      // number of bytes reserved by this page, -1 once the page has been closed
+      AtomicLong reserved = new AtomicLong();
+      proxy.prefetch(ioPool).thenAccept(image -> {
+         long sz = sizeOf(image);
+         if (reserved.compareAndSet(0, sz))
+            bytesInUse.addAndGet(sz);
+      });
+
+      proxy.addCloseListener(() -> {
+         long sz = reserved.getAndSet(-1);
+         if (sz > 0)
+            bytesInUse.addAndGet(-sz);
+      });
+   }
+
+   /**
+    * @return The approximate number of bytes used to store the raster data of an image.
+    */
+   static long sizeOf(BufferedImage image)
+   {
+      if (image == null)
+         return 0;
+
+      DataBuffer buffer = image.getRaster().getDataBuffer();
+      long bytesPerElement = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+      return (long)buffer.getSize() * buffer.getNumBanks() * bytesPerElement;
+   }
+
+   private static class DecoderThreadFactory implements ThreadFactory
+   {
+      private final AtomicInteger threadId = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "wcsa-image-decoder-" + threadId.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
@@ -2,88 +2,237 @@ package edu.tamu.tcat.visualpage.wcsa.importer;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import javax.imageio.ImageIO;
 
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+
 public class ImageProxy implements AutoCloseable
 {
    // we'll add info gathered from the source metadata over time.
    private final Path inputFile;
    private final DirectoryImporter importer;
-   
+
    private BufferedImage image = null;
+   private CompletableFuture<BufferedImage> pending = null;
+   private List<Runnable> closeListeners = new ArrayList<>();
    private boolean closed = false;
-   
+
    public ImageProxy(DirectoryImporter importer, Path input)
    {
       this.importer = importer;
       this.inputFile = input;
    }
-   
-   public synchronized BufferedImage getImage()
+
+   /**
+    * Returns the decoded image for this proxy. If the image is being decoded (for example,
+    * by an {@link ImagePrefetcher}), waits for that decode to finish rather than starting
+    * a new one. The image is decoded at most once.
+    *
+    * @return The decoded image.
+    * @throws IllegalStateException If the proxy has been closed or the image could not
+    *       be loaded.
+    */
+   public BufferedImage getImage()
+   {
+      CompletableFuture<BufferedImage> future;
+      boolean decode = false;
+      synchronized (this)
+      {
+         if (closed)
+            throw new IllegalStateException("This image proxy has been closed");
+
+         if (image != null)
+            return image;
+
+         if (pending == null)
+         {
+            pending = new CompletableFuture<>();
+            decode = true;
+         }
+
+         future = pending;
+      }
+
+      // decode outside of the monitor so that other accessors are not blocked on I/O
+      if (decode)
+         decode(future);
+
+      try
+      {
+         return future.join();
+      }
+      catch (CompletionException ex)
+      {
+         if (ex.getCause() instanceof IllegalStateException)
+            throw (IllegalStateException)ex.getCause();
+         throw new IllegalStateException("Failed to load image [" + inputFile + "]", ex.getCause());
+      }
+   }
+
+   /**
+    * Starts decoding the image for this proxy on the supplied executor, if it has not
+    * already been decoded or started decoding.
+    *
+    * @param executor The executor to use to decode the image.
+    * @return A future that completes with the decoded image.
+    */
+   synchronized CompletableFuture<BufferedImage> prefetch(Executor executor)
    {
       if (closed)
          throw new IllegalStateException("This image proxy has been closed");
-      
+
       if (image != null)
-         return image;
-      
+         return CompletableFuture.completedFuture(image);
+
+      if (pending == null)
+      {
+         CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+         pending = future;
+         executor.execute(() -> decode(future));
+      }
+
+      return pending;
+   }
+
+   /**
+    * Registers a callback to be invoked when this proxy is closed.
+    */
+   synchronized void addCloseListener(Runnable listener)
+   {
+      if (closed)
+         listener.run();
+      else
+         closeListeners.add(listener);
+   }
+
+   private void decode(CompletableFuture<BufferedImage> future)
+   {
       try
       {
-         image  = ImageIO.read(inputFile.toFile());
-         return image;
+         BufferedImage result;
+         try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.DECODE))
+         {
+            result = importer.getImageLoader().load(inputFile);
+         }
+
+         synchronized (this)
+         {
+            if (closed)
+            {
+               if (result != null)
+                  result.flush();
+               future.completeExceptionally(new IllegalStateException("This image proxy has been closed"));
+               return;
+            }
+
+            image = result;
+         }
+
+         future.complete(result);
       }
       catch (IOException e)
       {
-         throw new IllegalStateException("Failed to load image [" + inputFile + "]", e);
+         future.completeExceptionally(new IllegalStateException("Failed to load image [" + inputFile + "]", e));
+      }
+      catch (RuntimeException e)
+      {
+         future.completeExceptionally(e);
+      }
+      catch (Error e)
+      {
+         // for example, running out of memory on a large image. Anyone waiting on the
+         // image would otherwise wait forever, so fail the future before rethrowing
+         System.err.println("Failed to load image [" + inputFile + "]: " + e);
+         future.completeExceptionally(e);
+         throw e;
       }
    }
 
-   public synchronized void close()
+   public void close()
    {
-      if (image != null)
-         image.flush();
-      
-      image = null;
-      closed  = true;
+      List<Runnable> listeners;
+      synchronized (this)
+      {
+         if (image != null)
+            image.flush();
+
+         image = null;
+         closed  = true;
+
+         listeners = closeListeners;
+         closeListeners = new ArrayList<>();
+      }
+
+      listeners.forEach(Runnable::run);
    }
-   
+
    public int getWidth()
    {
       return getImage().getWidth();
    }
-   
+
    public int getHeight()
    {
       return getImage().getHeight();
    }
-   
+
    public Path getPath()
    {
       return inputFile;
    }
-   
+
    public String getFilename()
    {
       return inputFile.getFileName().toString();
    }
-   
+
    /**
-    * 
+    * Writes an output image for this page. If the importer has been configured with an
+    * {@link AsyncImageWriter}, the image is queued to be written in the background and must
+    * not be modified after this call.
+    *
     * @param name The name of the file to write
     * @param fmt The format to write
     * @param image The image to write
+    * @return A future that completes once the image has been written. Already complete
+    *       if the image was written synchronously.
     * @throws IOException
     */
-   public void write(String name, String fmt, BufferedImage image) throws IOException
+   public CompletableFuture<Void> write(String name, String fmt, BufferedImage image) throws IOException
    {
       Path dir = importer.getOutputPath(this);
+      Path outfile = dir.resolve(name + "." + fmt);
+      AsyncImageWriter writer = importer.getImageWriter();
+      if (writer != null)
+      {
+         try
+         {
+            return writer.write(outfile, fmt, image);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queuing image [" + outfile + "]");
+         }
+      }
+
       if (!Files.exists(dir))
          Files.createDirectories(dir);
-      
-      Path outfile = dir.resolve(name + "." + fmt);
-      ImageIO.write(image, fmt, outfile.toFile());
+
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.WRITE))
+      {
+         ImageIO.write(image, fmt, outfile.toFile());
+      }
+
+      return CompletableFuture.completedFuture(null);
    }
-}
\ No newline at end of file
+}
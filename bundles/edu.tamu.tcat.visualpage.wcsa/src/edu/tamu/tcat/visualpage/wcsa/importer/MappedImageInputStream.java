@@ -0,0 +1,84 @@
+package edu.tamu.tcat.visualpage.wcsa.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An {@link javax.imageio.stream.ImageInputStream} backed by a memory-mapped file. Allows
+ * image readers to seek and read directly from the page cache without copying the file
+ * into the heap.
+ *
+ * <p>
+ * Note that the mapped buffer is never explicitly unmapped; closing this stream (or the
+ * channel it was mapped from) does not release the mapping. The mapping is released only
+ * once the buffer is garbage collected. Until then, the file remains locked on Windows and
+ * may not be deleted, renamed or overwritten.
+ */
+class MappedImageInputStream extends ImageInputStreamImpl
+{
+   private final ByteBuffer buffer;
+
+   /**
+    * @param buffer The mapped file contents. The buffer's position is ignored; the stream
+    *       covers the entire buffer.
+    */
+   MappedImageInputStream(MappedByteBuffer buffer)
+   {
+      this.buffer = buffer.duplicate();
+      this.buffer.clear();
+   }
+
+   @Override
+   public int read() throws IOException
+   {
+      checkClosed();
+      bitOffset = 0;
+      if (streamPos >= buffer.limit())
+         return -1;
+
+      return buffer.get((int)streamPos++) & 0xff;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException
+   {
+      checkClosed();
+      if (off < 0 || len < 0 || off + len > b.length)
+         throw new IndexOutOfBoundsException("Invalid offset [" + off + "] or length [" + len + "] for buffer of size [" + b.length + "]");
+
+      bitOffset = 0;
+      if (len == 0)
+         return 0;
+
+      long remaining = buffer.limit() - streamPos;
+      if (remaining <= 0)
+         return -1;
+
+      int n = (int)Math.min(len, remaining);
+      buffer.position((int)streamPos);
+      buffer.get(b, off, n);
+      streamPos += n;
+      return n;
+   }
+
+   @Override
+   public long length()
+   {
+      return buffer.limit();
+   }
+
+   @Override
+   public boolean isCached()
+   {
+      return true;
+   }
+
+   @Override
+   public boolean isCachedMemory()
+   {
+      return true;
+   }
+}
@@ -0,0 +1,146 @@
+package edu.tamu.tcat.visualpage.wcsa.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of latencies, recorded in nanoseconds.
+ *
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is divided into
+ * eight equal sub-buckets, so reported percentiles are within 12.5% of the
+ * recorded value regardless of magnitude. Recording a value is lock free and does not
+ * allocate.
+ */
+public class LatencyHistogram
+{
+   private static final int SUB_BUCKET_BITS = 3;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+   private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+   private final LongAdder count = new LongAdder();
+   private final LongAdder sum = new LongAdder();
+   private final AtomicLong max = new AtomicLong();
+
+   /**
+    * Records a single latency.
+    *
+    * @param nanos The latency in nanoseconds. Negative values are recorded as 0.
+    */
+   public void record(long nanos)
+   {
+      long value = Math.max(0, nanos);
+      buckets.incrementAndGet(toBucket(value));
+      count.increment();
+      sum.add(value);
+      max.accumulateAndGet(value, Math::max);
+   }
+
+   /**
+    * @return The number of recorded values.
+    */
+   public long getCount()
+   {
+      return count.sum();
+   }
+
+   /**
+    * @return A point-in-time summary of the recorded values. Since values may be recorded
+    *       concurrently, the fields of the summary are approximately, but not exactly,
+    *       consistent with each other.
+    */
+   public Snapshot snapshot()
+   {
+      long[] counts = new long[NUM_BUCKETS];
+      long total = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++)
+      {
+         counts[i] = buckets.get(i);
+         total += counts[i];
+      }
+
+      long maxValue = max.get();
+      double mean = (total == 0) ? 0 : (double)sum.sum() / total;
+      return new Snapshot(total, mean,
+            percentile(counts, total, 0.50, maxValue),
+            percentile(counts, total, 0.90, maxValue),
+            percentile(counts, total, 0.99, maxValue),
+            maxValue);
+   }
+
+   private static long percentile(long[] counts, long total, double p, long maxValue)
+   {
+      if (total == 0)
+         return 0;
+
+      long rank = (long)Math.ceil(p * total);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++)
+      {
+         seen += counts[i];
+         if (seen >= rank)
+            return Math.min(upperBound(i), maxValue);
+      }
+
+      return maxValue;
+   }
+
+   static int toBucket(long value)
+   {
+      if (value < SUB_BUCKETS)
+         return (int)value;
+
+      int msb = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int)(value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+   }
+
+   /**
+    * @return The largest value that is counted in the supplied bucket.
+    */
+   static long upperBound(int bucket)
+   {
+      if (bucket < SUB_BUCKETS)
+         return bucket;
+
+      int msb = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      int sub = bucket % SUB_BUCKETS;
+      long width = 1L << (msb - SUB_BUCKET_BITS);
+      long lower = (1L << msb) + sub * width;
+      return lower + (width - 1);
+   }
+
+   /**
+    * An immutable summary of a {@link LatencyHistogram}. All values are in nanoseconds.
+    */
+   public static class Snapshot
+   {
+      public final long count;
+      public final double mean;
+      public final long p50;
+      public final long p90;
+      public final long p99;
+      public final long max;
+
+      Snapshot(long count, double mean, long p50, long p90, long p99, long max)
+      {
+         this.count = count;
+         this.mean = mean;
+         this.p50 = p50;
+         this.p90 = p90;
+         this.p99 = p99;
+         this.max = max;
+      }
+
+      /**
+       * @return The mean latency, in milliseconds.
+       */
+      public double getMeanMillis()
+      {
+         return mean / TimeUnit.MILLISECONDS.toNanos(1);
+      }
+   }
+}
@@ -0,0 +1,219 @@
+package edu.tamu.tcat.visualpage.wcsa.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects per-stage latencies, counters and gauges for the page processing pipeline.
+ * Metrics are created on first use and are identified by name. A single shared registry is
+ * available from {@link #getDefault()}.
+ *
+ * <p>
+ * Stages are timed using try-with-resources:
+ *
+ * <pre>
+ * try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.DECODE))
+ * {
+ *    ...
+ * }
+ * </pre>
+ *
+ * Stage timers may be nested. For example, {@link #STRINGS} is recorded within
+ * {@link #HOUGH}.
+ */
+public class MetricsRegistry
+{
+   /** Reading and decoding a page image. */
+   public static final String DECODE = "decode";
+   /** Binarizing a page. */
+   public static final String BINARIZE = "binarize";
+   /**
+    * Extracting the connected components of a binarized page. The fused extractor binarizes
+    * and labels a page in a single pass, so all of its time is recorded here.
+    */
+   public static final String COMPONENTS = "components";
+   /** Building the nearest neighbor table for the components of a page. */
+   public static final String NEIGHBORS = "neighbors";
+   /** A single Hough transform pass of text/graphics separation, including string segmentation. */
+   public static final String HOUGH = "hough";
+   /** Segmenting the components of a single Hough cluster into words and phrases. */
+   public static final String STRINGS = "strings";
+   /** Writing output images. */
+   public static final String WRITE = "write";
+   /** Analysis of a page by the page pipeline. */
+   public static final String ANALYZE = "analyze";
+   /** All stages of a page, from the start of decoding to the completion of all writes. */
+   public static final String PAGE = "page";
+
+   /** Counts pages that have been successfully processed. */
+   public static final String PAGES_COMPLETED = "pages.completed";
+   /** Counts pages that failed to process. */
+   public static final String PAGES_FAILED = "pages.failed";
+
+   /** The number of pages that have been submitted to the pipeline but not finished. */
+   public static final String QUEUE_DEPTH = "queue.depth";
+   /** The number of output images that have been submitted but not yet written. */
+   public static final String WRITE_QUEUE_DEPTH = "write.queue.depth";
+   /** The number of bytes of heap in use. */
+   public static final String HEAP_USED = "heap.used";
+
+   private static final MetricsRegistry instance = new MetricsRegistry();
+
+   private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+   private final ConcurrentMap<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+   private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+   public MetricsRegistry()
+   {
+      registerGauge(HEAP_USED, () -> {
+         Runtime rt = Runtime.getRuntime();
+         return rt.totalMemory() - rt.freeMemory();
+      });
+   }
+
+   /**
+    * @return The registry shared by all stages of page processing.
+    */
+   public static MetricsRegistry getDefault()
+   {
+      return instance;
+   }
+
+   /**
+    * @param name The name of the histogram.
+    * @return The latency histogram with the supplied name. Will be created if it does not
+    *       already exist.
+    */
+   public LatencyHistogram histogram(String name)
+   {
+      return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+   }
+
+   /**
+    * Starts timing a stage. The elapsed time will be recorded to the named histogram when
+    * the returned timer is closed.
+    *
+    * @param name The name of the stage.
+    * @return A running timer.
+    */
+   public Timer time(String name)
+   {
+      return new Timer(histogram(name));
+   }
+
+   /**
+    * Increments the named counter by one.
+    *
+    * @param name The name of the counter.
+    */
+   public void increment(String name)
+   {
+      counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+   }
+
+   /**
+    * @param name The name of the counter.
+    * @return The current value of the named counter, or 0 if it has never been incremented.
+    */
+   public long getCount(String name)
+   {
+      LongAdder counter = counters.get(name);
+      return (counter == null) ? 0 : counter.sum();
+   }
+
+   /**
+    * Registers a gauge that will be sampled whenever a snapshot is taken. Replaces any
+    * existing gauge with the same name.
+    *
+    * @param name The name of the gauge.
+    * @param gauge Supplies the current value of the gauge.
+    */
+   public void registerGauge(String name, LongSupplier gauge)
+   {
+      gauges.put(name, gauge);
+   }
+
+   /**
+    * Removes a gauge, if it is registered.
+    *
+    * @param name The name of the gauge.
+    * @param gauge The gauge to remove. The gauge is not removed if it has been replaced by
+    *       another gauge with the same name.
+    */
+   public void removeGauge(String name, LongSupplier gauge)
+   {
+      gauges.remove(name, gauge);
+   }
+
+   /**
+    * @return The current value of all metrics.
+    */
+   public Snapshot snapshot()
+   {
+      SortedMap<String, LatencyHistogram.Snapshot> latencies = new TreeMap<>();
+      histograms.forEach((name, h) -> latencies.put(name, h.snapshot()));
+
+      SortedMap<String, Long> counts = new TreeMap<>();
+      counters.forEach((name, c) -> counts.put(name, Long.valueOf(c.sum())));
+
+      SortedMap<String, Long> values = new TreeMap<>();
+      gauges.forEach((name, g) -> values.put(name, Long.valueOf(g.getAsLong())));
+
+      return new Snapshot(System.currentTimeMillis(), latencies, counts, values);
+   }
+
+   /**
+    * Times a single execution of a stage.
+    */
+   public static class Timer implements AutoCloseable
+   {
+      private final LatencyHistogram histogram;
+      private final long start;
+
+      private Timer(LatencyHistogram histogram)
+      {
+         this.histogram = histogram;
+         this.start = System.nanoTime();
+      }
+
+      /**
+       * Records the time elapsed since this timer was started.
+       */
+      @Override
+      public void close()
+      {
+         histogram.record(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * The values of all metrics in a registry at a point in time.
+    */
+   public static class Snapshot
+   {
+      public final long timestamp;
+      public final Map<String, LatencyHistogram.Snapshot> latencies;
+      public final Map<String, Long> counters;
+      public final Map<String, Long> gauges;
+
+      Snapshot(long timestamp, SortedMap<String, LatencyHistogram.Snapshot> latencies, SortedMap<String, Long> counters, SortedMap<String, Long> gauges)
+      {
+         this.timestamp = timestamp;
+         this.latencies = Collections.unmodifiableMap(latencies);
+         this.counters = Collections.unmodifiableMap(counters);
+         this.gauges = Collections.unmodifiableMap(gauges);
+      }
+
+      public long getCount(String name)
+      {
+         Long value = counters.get(name);
+         return (value == null) ? 0 : value.longValue();
+      }
+   }
+}
@@ -0,0 +1,198 @@
+package edu.tamu.tcat.visualpage.wcsa.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically reports the contents of a {@link MetricsRegistry}. Each report prints a
+ * single summary line to {@code System.out} and, if a snapshot file has been supplied,
+ * replaces that file with a JSON document containing the values of all metrics.
+ *
+ * <p>
+ * The snapshot file is written to a temporary file and moved into place, so readers never
+ * observe a partially written snapshot. A final report is made when the reporter is closed.
+ */
+public class MetricsReporter implements AutoCloseable
+{
+   private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private final MetricsRegistry registry;
+   private final Path snapshotFile;
+   private final ScheduledExecutorService scheduler;
+   private final long startTime;
+
+   private long lastTime;
+   private long lastCompleted;
+
+   /**
+    * @param registry The registry to report.
+    * @param intervalSeconds The number of seconds between reports. If not greater than 0,
+    *       a report is made only when the reporter is closed.
+    * @param snapshotFile The file to which snapshots will be written. May be {@code null},
+    *       in which case no snapshots are written.
+    */
+   public MetricsReporter(MetricsRegistry registry, long intervalSeconds, Path snapshotFile)
+   {
+      this.registry = registry;
+      this.snapshotFile = snapshotFile;
+      this.startTime = System.currentTimeMillis();
+      this.lastTime = startTime;
+      this.lastCompleted = registry.getCount(MetricsRegistry.PAGES_COMPLETED);
+
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "wcsa-metrics-reporter");
+         t.setDaemon(true);
+         return t;
+      });
+
+      if (intervalSeconds > 0)
+         scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+   }
+
+   /**
+    * Stops periodic reporting and makes a final report.
+    */
+   @Override
+   public void close()
+   {
+      scheduler.shutdownNow();
+      try
+      {
+         scheduler.awaitTermination(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+      }
+
+      report();
+   }
+
+   private synchronized void report()
+   {
+      try
+      {
+         MetricsRegistry.Snapshot snapshot = registry.snapshot();
+
+         long completed = snapshot.getCount(MetricsRegistry.PAGES_COMPLETED);
+         double elapsed = Math.max(1, snapshot.timestamp - lastTime) / 1000.0;
+         double pagesPerSec = (completed - lastCompleted) / elapsed;
+         lastTime = snapshot.timestamp;
+         lastCompleted = completed;
+
+         System.out.println(formatLine(snapshot, pagesPerSec));
+         if (snapshotFile != null)
+            writeSnapshot(snapshot, pagesPerSec);
+      }
+      catch (Exception ex)
+      {
+         // never allow reporting to interfere with processing
+         System.err.println("Failed to report metrics: " + ex);
+      }
+   }
+
+   private static String formatLine(MetricsRegistry.Snapshot snapshot, double pagesPerSec)
+   {
+      StringBuilder sb = new StringBuilder("[metrics]");
+      sb.append(String.format(Locale.ROOT, " pages: %d (%.2f/s) failed: %d",
+            Long.valueOf(snapshot.getCount(MetricsRegistry.PAGES_COMPLETED)),
+            Double.valueOf(pagesPerSec),
+            Long.valueOf(snapshot.getCount(MetricsRegistry.PAGES_FAILED))));
+
+      Long depth = snapshot.gauges.get(MetricsRegistry.QUEUE_DEPTH);
+      if (depth != null)
+         sb.append(" queue: ").append(depth);
+
+      Long heap = snapshot.gauges.get(MetricsRegistry.HEAP_USED);
+      if (heap != null)
+         sb.append(" heap: ").append(heap.longValue() / (1024 * 1024)).append(" MB");
+
+      snapshot.latencies.forEach((name, h) -> {
+         if (h.count == 0)
+            return;
+
+         sb.append(String.format(Locale.ROOT, " | %s p50=%.1f p99=%.1f ms",
+               name, Double.valueOf(h.p50 / NANOS_PER_MILLI), Double.valueOf(h.p99 / NANOS_PER_MILLI)));
+      });
+
+      return sb.toString();
+   }
+
+   private void writeSnapshot(MetricsRegistry.Snapshot snapshot, double pagesPerSec) throws IOException
+   {
+      Path dir = snapshotFile.toAbsolutePath().getParent();
+      if (dir != null && !Files.exists(dir))
+         Files.createDirectories(dir);
+
+      Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+      {
+         writer.write(toJson(snapshot, pagesPerSec, snapshot.timestamp - startTime));
+      }
+
+      try
+      {
+         Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException ex)
+      {
+         Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   private static String toJson(MetricsRegistry.Snapshot snapshot, double pagesPerSec, long uptime)
+   {
+      StringBuilder sb = new StringBuilder();
+      sb.append("{\n");
+      sb.append("  \"timestamp\": \"").append(Instant.ofEpochMilli(snapshot.timestamp)).append("\",\n");
+      sb.append("  \"uptimeMillis\": ").append(uptime).append(",\n");
+      sb.append("  \"pagesPerSecond\": ").append(String.format(Locale.ROOT, "%.3f", Double.valueOf(pagesPerSec))).append(",\n");
+      sb.append("  \"counters\": ");
+      appendValues(sb, snapshot.counters);
+      sb.append(",\n  \"gauges\": ");
+      appendValues(sb, snapshot.gauges);
+      sb.append(",\n  \"latencyMillis\": {");
+
+      String sep = "\n";
+      for (Map.Entry<String, LatencyHistogram.Snapshot> entry : snapshot.latencies.entrySet())
+      {
+         LatencyHistogram.Snapshot h = entry.getValue();
+         sb.append(sep).append("    \"").append(entry.getKey()).append("\": ");
+         sb.append(String.format(Locale.ROOT,
+               "{\"count\": %d, \"mean\": %.3f, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"max\": %.3f}",
+               Long.valueOf(h.count),
+               Double.valueOf(h.mean / NANOS_PER_MILLI),
+               Double.valueOf(h.p50 / NANOS_PER_MILLI),
+               Double.valueOf(h.p90 / NANOS_PER_MILLI),
+               Double.valueOf(h.p99 / NANOS_PER_MILLI),
+               Double.valueOf(h.max / NANOS_PER_MILLI)));
+         sep = ",\n";
+      }
+
+      sb.append("\n  }\n}\n");
+      return sb.toString();
+   }
+
+   private static void appendValues(StringBuilder sb, Map<String, Long> values)
+   {
+      sb.append("{");
+      String sep = "";
+      for (Map.Entry<String, Long> entry : values.entrySet())
+      {
+         sb.append(sep).append("\"").append(entry.getKey()).append("\": ").append(entry.getValue());
+         sep = ", ";
+      }
+      sb.append("}");
+   }
+}
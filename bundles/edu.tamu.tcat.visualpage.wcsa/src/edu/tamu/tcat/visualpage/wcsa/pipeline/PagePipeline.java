@@ -0,0 +1,319 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+
+/**
+ * Processes pages in parallel on a fixed pool of worker threads. Each page is run through
+ * three stages (decode, analyze, write) that are scheduled independently on the pool so that
+ * I/O bound and CPU bound work for different pages may overlap.
+ *
+ * <p>
+ * The number of pages that are in flight at any one time is bounded. Since every in-flight
+ * page holds at most one decoded {@link BufferedImage}, this also bounds the memory used for
+ * decoded rasters. Calls to {@link #submit(ImageProxy)} block once this limit is reached.
+ *
+ * <p>
+ * Analysis and total page latencies, page counts and the number of in-flight pages are
+ * recorded to the default {@link MetricsRegistry}.
+ *
+ * @param <R> The type of result produced by the analysis stage.
+ */
+public class PagePipeline<R> implements AutoCloseable
+{
+   /**
+    * Defines the work to be performed for each page.
+    *
+    * @param <R> The type of result produced by the analysis stage.
+    */
+   public interface PageProcessor<R>
+   {
+      /**
+       * Analyzes a decoded page image. Called on a worker thread.
+       *
+       * @param proxy The page being processed.
+       * @param image The decoded image for this page.
+       * @return The result of the analysis. Will be supplied to
+       *       {@link #write(ImageProxy, BufferedImage, Object)}.
+       * @throws Exception If the analysis fails.
+       */
+      R analyze(ImageProxy proxy, BufferedImage image) throws Exception;
+
+      /**
+       * Writes any outputs for an analyzed page. Called on a worker thread. Outputs may be
+       * written in the background; the page is not finished until the returned future
+       * completes, and fails if it completes exceptionally.
+       *
+       * @param proxy The page being processed.
+       * @param image The decoded image for this page.
+       * @param result The result returned by {@link #analyze(ImageProxy, BufferedImage)}.
+       * @return A future that completes once all outputs of the page have been written.
+       * @throws Exception If the outputs could not be written.
+       */
+      CompletableFuture<Void> write(ImageProxy proxy, BufferedImage image, R result) throws Exception;
+   }
+
+   /**
+    * Notified as each page finishes, once its outputs have been written. Notifications are
+    * made before the page is counted as finished, so all notifications for submitted pages
+    * have been made once {@link #awaitCompletion()} returns.
+    */
+   public interface PageListener
+   {
+      /**
+       * Called after all stages of a page have completed successfully and all of its
+       * outputs have been written.
+       *
+       * @param proxy The page that was processed.
+       */
+      default void completed(ImageProxy proxy)
+      {
+      }
+
+      /**
+       * Called after a stage of a page has failed.
+       *
+       * @param proxy The page that failed.
+       * @param cause The reason for the failure.
+       */
+      default void failed(ImageProxy proxy, Throwable cause)
+      {
+      }
+   }
+
+   private final PageProcessor<R> processor;
+   private final ExecutorService workers;
+   private final Semaphore inFlight;
+   private final int maxInFlight;
+   private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+   private final LongSupplier queueDepth = this::getInFlightCount;
+   private volatile PageListener listener = new PageListener() { };
+
+   private final AtomicInteger completed = new AtomicInteger();
+   private final AtomicInteger failed = new AtomicInteger();
+
+   /**
+    * @param processor The processor to apply to each page.
+    * @param numWorkers The number of worker threads to use. Must be greater than 0.
+    * @param maxInFlight The maximum number of pages that may be decoded but not yet
+    *       written at any one time. Must be greater than 0.
+    */
+   public PagePipeline(PageProcessor<R> processor, int numWorkers, int maxInFlight)
+   {
+      Objects.requireNonNull(processor, "Supplied page processor must not be null.");
+      if (numWorkers <= 0)
+         throw new IllegalArgumentException("Number of workers [" + numWorkers + "] must be greater than 0.");
+      if (maxInFlight <= 0)
+         throw new IllegalArgumentException("Maximum number of in-flight pages [" + maxInFlight + "] must be greater than 0.");
+
+      this.processor = processor;
+      this.maxInFlight = maxInFlight;
+      this.inFlight = new Semaphore(maxInFlight);
+      this.workers = Executors.newFixedThreadPool(numWorkers, new WorkerThreadFactory());
+
+      metrics.registerGauge(MetricsRegistry.QUEUE_DEPTH, queueDepth);
+   }
+
+   /**
+    * Sets the listener to be notified as each page finishes. Should be set before any pages
+    * are submitted.
+    *
+    * @param listener The listener. Must not be {@code null}.
+    */
+   public void setPageListener(PageListener listener)
+   {
+      this.listener = Objects.requireNonNull(listener, "Supplied page listener must not be null.");
+   }
+
+   /**
+    * Schedules a page for processing. Blocks until the number of in-flight pages drops
+    * below the configured limit. The supplied proxy will be closed once the page has been
+    * processed.
+    *
+    * @param proxy The page to process.
+    * @return A future that completes once all stages for this page have finished and its
+    *       outputs have been written.
+    * @throws InterruptedException If interrupted while waiting for capacity.
+    */
+   public CompletableFuture<Void> submit(ImageProxy proxy) throws InterruptedException
+   {
+      inFlight.acquire();
+      MetricsRegistry.Timer pageTimer = metrics.time(MetricsRegistry.PAGE);
+      try
+      {
+         return CompletableFuture.supplyAsync(proxy::getImage, workers)
+               .thenApplyAsync(image -> new PageState<>(image, analyze(proxy, image)), workers)
+               .thenComposeAsync(state -> write(proxy, state), workers)
+               .whenComplete((v, ex) -> {
+                  proxy.close();
+                  if (ex == null)
+                  {
+                     pageTimer.close();
+                     metrics.increment(MetricsRegistry.PAGES_COMPLETED);
+                     completed.incrementAndGet();
+                     notifyCompleted(proxy);
+                  }
+                  else
+                  {
+                     metrics.increment(MetricsRegistry.PAGES_FAILED);
+                     failed.incrementAndGet();
+                     Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                     System.err.println("Failed to process page [" + proxy.getPath() + "]: " + cause);
+                     cause.printStackTrace();
+                     notifyFailed(proxy, cause);
+                  }
+                  
+                  inFlight.release();
+               });
+      }
+      catch (RuntimeException ex)
+      {
+         // the executor rejected the task, nothing has been scheduled for this page
+         inFlight.release();
+         throw ex;
+      }
+   }
+
+   /**
+    * Blocks until all submitted pages have been processed.
+    *
+    * @throws InterruptedException If interrupted while waiting.
+    */
+   public void awaitCompletion() throws InterruptedException
+   {
+      inFlight.acquire(maxInFlight);
+      inFlight.release(maxInFlight);
+   }
+
+   /**
+    * @return The number of pages that have been successfully processed.
+    */
+   public int getCompletedCount()
+   {
+      return completed.get();
+   }
+
+   /**
+    * @return The number of pages that failed to process.
+    */
+   public int getFailedCount()
+   {
+      return failed.get();
+   }
+
+   /**
+    * @return The number of pages that have been submitted but have not finished processing.
+    */
+   public int getInFlightCount()
+   {
+      return maxInFlight - inFlight.availablePermits();
+   }
+
+   /**
+    * Waits for all submitted pages to be processed and shuts down the worker pool.
+    */
+   @Override
+   public void close()
+   {
+      try
+      {
+         awaitCompletion();
+         workers.shutdown();
+         workers.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+      }
+      finally
+      {
+         metrics.removeGauge(MetricsRegistry.QUEUE_DEPTH, queueDepth);
+         workers.shutdown();
+      }
+   }
+
+   private void notifyCompleted(ImageProxy proxy)
+   {
+      try
+      {
+         listener.completed(proxy);
+      }
+      catch (RuntimeException ex)
+      {
+         System.err.println("Page listener failed for page [" + proxy.getPath() + "]: " + ex);
+      }
+   }
+
+   private void notifyFailed(ImageProxy proxy, Throwable cause)
+   {
+      try
+      {
+         listener.failed(proxy, cause);
+      }
+      catch (RuntimeException ex)
+      {
+         System.err.println("Page listener failed for page [" + proxy.getPath() + "]: " + ex);
+      }
+   }
+
+   private R analyze(ImageProxy proxy, BufferedImage image)
+   {
+      try (MetricsRegistry.Timer timer = metrics.time(MetricsRegistry.ANALYZE))
+      {
+         return processor.analyze(proxy, image);
+      }
+      catch (Exception ex)
+      {
+         throw new CompletionException(ex);
+      }
+   }
+
+   private CompletableFuture<Void> write(ImageProxy proxy, PageState<R> state)
+   {
+      try
+      {
+         return processor.write(proxy, state.image, state.result);
+      }
+      catch (Exception ex)
+      {
+         throw new CompletionException(ex);
+      }
+   }
+
+   private static class PageState<R>
+   {
+      final BufferedImage image;
+      final R result;
+
+      PageState(BufferedImage image, R result)
+      {
+         this.image = image;
+         this.result = result;
+      }
+   }
+
+   private static class WorkerThreadFactory implements ThreadFactory
+   {
+      private final AtomicInteger threadId = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "wcsa-page-worker-" + threadId.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
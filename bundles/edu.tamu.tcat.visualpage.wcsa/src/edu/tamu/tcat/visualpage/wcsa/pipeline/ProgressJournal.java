@@ -0,0 +1,241 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A durable record of the pages that have been completed by a batch run, allowing a run
+ * that is interrupted to be restarted without repeating finished work.
+ *
+ * <p>
+ * The journal is an append-only text file containing one page id per line. Each completed
+ * page is written to the file immediately, but the file is only forced to stable storage
+ * once every {@code batchSize} pages and when the journal is closed. A crash of the JVM
+ * therefore loses no progress, while a crash of the host loses at most one batch. A line
+ * that was partially written when a run was interrupted is ignored when the journal is
+ * reopened, and is then terminated before new pages are appended. Later runs read it as a
+ * page id, which is harmless since it is only a prefix of the id that was being written.
+ *
+ * <p>
+ * When a run is split into shards, each shard appends to its own journal file, named by
+ * adding a suffix to the base journal file. Completed pages are read from the base file and
+ * from every suffixed file in the same directory, so a run may be restarted with a
+ * different number of shards without losing progress.
+ *
+ * <p>
+ * Several processes may append to the same journal file, for example when they share the
+ * items of a run through a {@link WorkCoordinator} without sharding it. The file is opened
+ * for appending and is never truncated, and each page is written with a single append, so
+ * that no process overwrites the lines of another.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+public class ProgressJournal implements AutoCloseable
+{
+   private final Path file;
+   private final FileChannel channel;
+   private final int batchSize;
+   private final Set<String> completed = new HashSet<>();
+
+   private int unsynced = 0;
+
+   /**
+    * Opens a journal that is not sharded.
+    *
+    * @param file The journal file. Will be created if it does not exist.
+    * @param batchSize The number of pages to record between forcing the journal to disk.
+    *       Must be greater than 0.
+    * @throws IOException If the journal could not be read or opened for writing.
+    */
+   public ProgressJournal(Path file, int batchSize) throws IOException
+   {
+      this(file, batchSize, null);
+   }
+
+   /**
+    * @param base The base journal file, from which the names of shard journals are derived.
+    * @param batchSize The number of pages to record between forcing the journal to disk.
+    *       Must be greater than 0.
+    * @param shard The suffix identifying the shard that will write to this journal, for
+    *       example {@code "2-of-4"}. If {@code null}, this journal writes to the base file.
+    * @throws IOException If the journal could not be read or opened for writing.
+    */
+   public ProgressJournal(Path base, int batchSize, String shard) throws IOException
+   {
+      if (batchSize <= 0)
+         throw new IllegalArgumentException("Batch size [" + batchSize + "] must be greater than 0.");
+
+      Path dir = base.toAbsolutePath().getParent();
+      String name = base.getFileName().toString();
+      this.file = (shard == null) ? base : base.resolveSibling(name + "." + shard);
+      this.batchSize = batchSize;
+
+      Files.createDirectories(dir);
+      DirectoryStream.Filter<Path> isJournal = p -> {
+         String fname = p.getFileName().toString();
+         return fname.equals(name) || fname.startsWith(name + ".");
+      };
+
+      try (DirectoryStream<Path> journals = Files.newDirectoryStream(dir, isJournal))
+      {
+         for (Path journal : journals)
+         {
+            load(journal);
+         }
+      }
+
+      // other processes may be appending to this file, so it must not be truncated. Instead,
+      // a partial line left by an interrupted run is ended so that it is not joined to the
+      // next page written
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      if (completeLength(file) < channel.size())
+         write("\n");
+   }
+
+   /**
+    * @return The file to which this journal records completed pages.
+    */
+   public Path getFile()
+   {
+      return file;
+   }
+
+   /**
+    * @param id The id of a page.
+    * @return {@code true} if the page has been recorded as completed by this or any
+    *       previous run.
+    */
+   public synchronized boolean isCompleted(String id)
+   {
+      return completed.contains(id);
+   }
+
+   /**
+    * @return The number of pages that have been recorded as completed.
+    */
+   public synchronized int getCompletedCount()
+   {
+      return completed.size();
+   }
+
+   /**
+    * Records a page as completed.
+    *
+    * @param id The id of the page. Must not contain line breaks.
+    * @throws IOException If the journal could not be written.
+    */
+   public synchronized void markCompleted(String id) throws IOException
+   {
+      if (id.indexOf('\n') >= 0 || id.indexOf('\r') >= 0)
+         throw new IllegalArgumentException("Page id [" + id + "] must not contain line breaks.");
+
+      if (!completed.add(id))
+         return;
+
+      write(id + "\n");
+      if (++unsynced >= batchSize)
+         sync();
+   }
+
+   /**
+    * Forces all recorded pages to stable storage.
+    *
+    * @throws IOException If the journal could not be written.
+    */
+   public synchronized void sync() throws IOException
+   {
+      if (unsynced == 0)
+         return;
+
+      channel.force(false);
+      unsynced = 0;
+   }
+
+   @Override
+   public synchronized void close() throws IOException
+   {
+      try
+      {
+         sync();
+      }
+      finally
+      {
+         channel.close();
+      }
+   }
+
+   private void write(String text) throws IOException
+   {
+      ByteBuffer buffer = StandardCharsets.UTF_8.encode(text);
+      while (buffer.hasRemaining())
+      {
+         channel.write(buffer);
+      }
+   }
+
+   private void load(Path journal) throws IOException
+   {
+      long length = completeLength(journal);
+      try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8))
+      {
+         // only read complete lines, since the last line may have been partially written
+         long read = 0;
+         String line;
+         while ((line = reader.readLine()) != null)
+         {
+            read += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (read > length)
+               break;
+
+            if (!line.isEmpty())
+               completed.add(line);
+         }
+      }
+   }
+
+   /**
+    * @return The length of the supplied journal up to and including its last line break.
+    */
+   private static long completeLength(Path journal) throws IOException
+   {
+      if (!Files.exists(journal))
+         return 0;
+
+      try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ))
+      {
+         ByteBuffer buffer = ByteBuffer.allocate(4096);
+         long end = in.size();
+         while (end > 0)
+         {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int)(end - start));
+            while (buffer.hasRemaining())
+            {
+               if (in.read(buffer, start + buffer.position()) < 0)
+                  break;
+            }
+
+            for (int i = buffer.position() - 1; i >= 0; i--)
+            {
+               if (buffer.get(i) == '\n')
+                  return start + i + 1;
+            }
+
+            end = start;
+         }
+
+         return 0;
+      }
+   }
+}
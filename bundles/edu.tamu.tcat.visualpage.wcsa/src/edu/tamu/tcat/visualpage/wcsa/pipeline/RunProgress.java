@@ -0,0 +1,218 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.tamu.tcat.visualpage.wcsa.importer.DirectoryImporter;
+import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
+
+/**
+ * Connects a batch run to its {@link ProgressJournal} and {@link WorkCoordinator}, either of
+ * which may be absent.
+ *
+ * <p>
+ * Pages recorded in the journal are skipped before they are decoded, and each page that
+ * completes is recorded. The pipeline reports a page as completed only once its outputs
+ * have been written, so a page is never recorded while its output is still queued. Each
+ * item (a directory added to the importer) is claimed from the coordinator when iteration
+ * reaches it and is skipped if it cannot be claimed. Once all pages of a claimed item have
+ * finished, the item is marked as completed, or released for another process to retry if
+ * any of its pages failed.
+ *
+ * <p>
+ * Pages must be iterated by a single thread. Page notifications may be made from any
+ * thread.
+ */
+public class RunProgress implements PagePipeline.PageListener
+{
+   private final DirectoryImporter importer;
+   private final Path inputBase;
+   private final ProgressJournal journal;
+   private final WorkCoordinator coordinator;
+
+   private final Map<ImageProxy, ClaimedItem> pageItems = new ConcurrentHashMap<>();
+   private ClaimedItem current;
+
+   /**
+    * @param importer The importer supplying the pages of the run.
+    * @param inputBase The base directory of the item list. Item ids are the paths of item
+    *       directories relative to this directory.
+    * @param journal The journal of completed pages. May be {@code null}.
+    * @param coordinator The coordinator from which to claim items. May be {@code null}.
+    */
+   public RunProgress(DirectoryImporter importer, Path inputBase, ProgressJournal journal, WorkCoordinator coordinator)
+   {
+      this.importer = importer;
+      this.inputBase = inputBase;
+      this.journal = journal;
+      this.coordinator = coordinator;
+   }
+
+   /**
+    * @return The pages that remain to be processed by this process. Items are claimed
+    *       lazily as the returned iterator reaches them. Once the iterator is exhausted,
+    *       {@link #endOfInput()} must be called.
+    */
+   public Iterator<ImageProxy> pages()
+   {
+      importer.setDirectoryFilter(this::enter);
+
+      // skip completed pages before they are prefetched, so that they are never decoded
+      return importer.stream()
+            .filter(this::isPending)
+            .iterator();
+   }
+
+   /**
+    * Indicates that all pages have been returned by the iterator, so that the last item
+    * may be completed once its pages have finished.
+    */
+   public void endOfInput()
+   {
+      finishListing();
+   }
+
+   @Override
+   public void completed(ImageProxy proxy)
+   {
+      if (journal != null)
+      {
+         String id = importer.getPageId(proxy);
+         try
+         {
+            journal.markCompleted(id);
+         }
+         catch (IOException e)
+         {
+            throw new UncheckedIOException("Failed to record completed page [" + id + "]", e);
+         }
+      }
+
+      finish(proxy, true);
+   }
+
+   @Override
+   public void failed(ImageProxy proxy, Throwable cause)
+   {
+      finish(proxy, false);
+   }
+
+   private boolean enter(Path dir)
+   {
+      // the importer has returned all pages of the previous directory
+      finishListing();
+      if (coordinator == null)
+         return true;
+
+      String item = inputBase.relativize(dir).toString().replace(dir.getFileSystem().getSeparator(), "/");
+      try
+      {
+         if (!coordinator.claim(item))
+         {
+            System.out.println("Skipping item [" + item + "]: completed or claimed by another process.");
+            return false;
+         }
+      }
+      catch (IOException e)
+      {
+         System.err.println("Failed to claim item [" + item + "]: " + e);
+         return false;
+      }
+
+      current = new ClaimedItem(item);
+      return true;
+   }
+
+   private boolean isPending(ImageProxy proxy)
+   {
+      if (journal != null && journal.isCompleted(importer.getPageId(proxy)))
+         return false;
+
+      if (current != null)
+      {
+         current.add();
+         pageItems.put(proxy, current);
+      }
+
+      return true;
+   }
+
+   private void finishListing()
+   {
+      if (current != null)
+         current.listed();
+
+      current = null;
+   }
+
+   private void finish(ImageProxy proxy, boolean success)
+   {
+      ClaimedItem item = pageItems.remove(proxy);
+      if (item != null)
+         item.finished(success);
+   }
+
+   /**
+    * Counts the unfinished pages of an item claimed from the coordinator.
+    */
+   private class ClaimedItem
+   {
+      private final String id;
+      private int pending = 0;
+      private boolean listed = false;
+      private boolean failed = false;
+
+      ClaimedItem(String id)
+      {
+         this.id = id;
+      }
+
+      synchronized void add()
+      {
+         pending++;
+      }
+
+      void listed()
+      {
+         synchronized (this)
+         {
+            listed = true;
+            if (pending > 0)
+               return;
+         }
+
+         done();
+      }
+
+      void finished(boolean success)
+      {
+         synchronized (this)
+         {
+            failed |= !success;
+            if (--pending > 0 || !listed)
+               return;
+         }
+
+         done();
+      }
+
+      private void done()
+      {
+         try
+         {
+            if (failed)
+               coordinator.release(id);
+            else
+               coordinator.complete(id);
+         }
+         catch (IOException e)
+         {
+            System.err.println("Failed to update lease for item [" + id + "]: " + e);
+         }
+      }
+   }
+}
@@ -0,0 +1,370 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributes the items of a batch run among several processes, possibly on different
+ * hosts, that share a file system. No other infrastructure is required.
+ *
+ * <p>
+ * Before processing an item, a process claims it by atomically creating a lease file for the
+ * item in a shared directory. Only one process can create the file, so only one process
+ * holds the lease. While an item is being processed its lease is renewed periodically by
+ * updating the modification time of the lease file. Once the item is finished, a marker is
+ * written to record that it is done and the lease is deleted. If the item fails, the lease
+ * is deleted so that another process may retry it.
+ *
+ * <p>
+ * A lease that has not been renewed within the lease duration is assumed to belong to a
+ * process that has crashed and may be taken over by another process. A process taking over
+ * a lease first creates a token file named for the modification time and owner of the
+ * expired lease, which only one process can create. It then checks that the lease is
+ * unchanged and atomically replaces it with its own lease, so that the lease file never
+ * disappears while it is taken over. Only one process therefore takes over any expired
+ * lease. A token left by a process that stalled or crashed part way through a takeover
+ * goes stale after the lease duration, after which the next token in sequence may be
+ * created. Leases are renewed and deleted only by the owner recorded in the lease file.
+ *
+ * <p>
+ * The lease duration should be much longer than both the renewal interval (one third of
+ * the duration) and any clock skew between hosts. Items are processed at least once: an
+ * item whose owner stalls for longer than the lease duration may be processed twice.
+ *
+ * <p>
+ * The shared directory contains a {@code leases} directory holding the lease files of
+ * items that are in progress and a {@code done} directory holding a marker for each
+ * completed item. Instances are thread safe.
+ */
+public class WorkCoordinator implements AutoCloseable
+{
+   private final Path leaseDir;
+   private final Path doneDir;
+   private final long leaseMillis;
+   private final String owner;
+   private final Set<String> held = ConcurrentHashMap.newKeySet();
+   private final ScheduledExecutorService renewer;
+
+   /**
+    * @param sharedDir The directory shared by all cooperating processes. Will be created if
+    *       it does not exist.
+    * @param leaseSeconds The number of seconds after which a lease that has not been
+    *       renewed expires. Must be greater than 0.
+    * @throws IOException If the shared directory could not be created.
+    */
+   public WorkCoordinator(Path sharedDir, long leaseSeconds) throws IOException
+   {
+      if (leaseSeconds <= 0)
+         throw new IllegalArgumentException("Lease duration [" + leaseSeconds + "] must be greater than 0.");
+
+      this.leaseDir = Files.createDirectories(sharedDir.resolve("leases"));
+      this.doneDir = Files.createDirectories(sharedDir.resolve("done"));
+      this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+      this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+      this.renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "wcsa-lease-renewer");
+         t.setDaemon(true);
+         return t;
+      });
+
+      long interval = Math.max(1, leaseMillis / 3);
+      renewer.scheduleAtFixedRate(this::renewAll, interval, interval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * @return Identifies this process in the lease files it creates.
+    */
+   public String getOwner()
+   {
+      return owner;
+   }
+
+   /**
+    * Attempts to claim an item for processing by this process.
+    *
+    * @param item The id of the item.
+    * @return {@code true} if this process now holds the lease for the item and should
+    *       process it. {@code false} if the item has already been completed or is being
+    *       processed by another process.
+    * @throws IOException If the shared directory could not be accessed.
+    */
+   public boolean claim(String item) throws IOException
+   {
+      String key = toKey(item);
+      if (held.contains(key) || Files.exists(doneDir.resolve(key)))
+         return false;
+
+      Path lease = leaseDir.resolve(key);
+      if (tryCreate(lease, item))
+         return true;
+
+      // the lease exists; take it over if its owner has stopped renewing it
+      FileTime modified;
+      String holder;
+      try
+      {
+         modified = Files.getLastModifiedTime(lease);
+         holder = readOwner(lease);
+      }
+      catch (NoSuchFileException ex)
+      {
+         // released while we were looking
+         return !Files.exists(doneDir.resolve(key)) && tryCreate(lease, item);
+      }
+
+      if (System.currentTimeMillis() - modified.toMillis() < leaseMillis)
+         return false;
+
+      return takeOver(lease, item, modified, holder);
+   }
+
+   /**
+    * Records an item as completed and releases its lease.
+    *
+    * @param item The id of an item claimed by this process.
+    * @throws IOException If the shared directory could not be written.
+    */
+   public void complete(String item) throws IOException
+   {
+      String key = toKey(item);
+      try
+      {
+         Files.write(doneDir.resolve(key), (item + "\n" + owner + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+      finally
+      {
+         releaseKey(key);
+      }
+   }
+
+   /**
+    * Releases the lease for an item without marking it as completed, so that it may be
+    * claimed again.
+    *
+    * @param item The id of an item claimed by this process.
+    * @throws IOException If the lease could not be deleted.
+    */
+   public void release(String item) throws IOException
+   {
+      releaseKey(toKey(item));
+   }
+
+   /**
+    * Stops renewing leases and releases all leases still held by this process.
+    */
+   @Override
+   public void close()
+   {
+      renewer.shutdownNow();
+      try
+      {
+         renewer.awaitTermination(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+      }
+
+      for (String key : held)
+      {
+         try
+         {
+            releaseKey(key);
+         }
+         catch (IOException ex)
+         {
+            System.err.println("Failed to release lease [" + key + "]: " + ex);
+         }
+      }
+   }
+
+   private boolean tryCreate(Path lease, String item) throws IOException
+   {
+      try
+      {
+         Files.createFile(lease);
+      }
+      catch (FileAlreadyExistsException ex)
+      {
+         return false;
+      }
+
+      // the owner must be recorded before the lease is renewed
+      Files.write(lease, (item + "\n" + owner + "\n").getBytes(StandardCharsets.UTF_8));
+      held.add(lease.getFileName().toString());
+      return true;
+   }
+
+   /**
+    * Replaces an expired lease with a lease held by this process, provided that no other
+    * process is taking it over.
+    */
+   private boolean takeOver(Path lease, String item, FileTime modified, String holder) throws IOException
+   {
+      String key = lease.getFileName().toString();
+      String tokenName = key + "." + Long.toHexString(modified.toMillis()) + "." + Integer.toHexString(holder.hashCode()) + ".takeover";
+      int attempt = 0;
+      while (true)
+      {
+         try
+         {
+            Files.createFile(leaseDir.resolve(tokenName + attempt));
+            break;
+         }
+         catch (FileAlreadyExistsException ex)
+         {
+            // another process is taking over the lease, unless it stalled part way through
+            if (!isExpired(leaseDir.resolve(tokenName + attempt)))
+               return false;
+
+            attempt++;
+         }
+      }
+
+      Path tmp = leaseDir.resolve(key + "." + UUID.randomUUID() + ".tmp");
+      try
+      {
+         // the owner may have renewed or released the lease since we looked
+         try
+         {
+            if (!modified.equals(Files.getLastModifiedTime(lease)) || !holder.equals(readOwner(lease)))
+               return false;
+         }
+         catch (NoSuchFileException ex)
+         {
+            return !Files.exists(doneDir.resolve(key)) && tryCreate(lease, item);
+         }
+
+         if (Files.exists(doneDir.resolve(key)))
+            return false;
+
+         Files.write(tmp, (item + "\n" + owner + "\n").getBytes(StandardCharsets.UTF_8));
+         Files.move(tmp, lease, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         held.add(key);
+         System.out.println("Took over expired lease for item [" + item + "] from [" + holder + "].");
+         return true;
+      }
+      finally
+      {
+         // once the lease has been replaced, a token recreated for the expired lease will
+         // find the lease changed, so the tokens need not be kept
+         Files.deleteIfExists(tmp);
+         for (int i = 0; i <= attempt; i++)
+         {
+            Files.deleteIfExists(leaseDir.resolve(tokenName + i));
+         }
+      }
+   }
+
+   private boolean isExpired(Path file) throws IOException
+   {
+      try
+      {
+         return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() >= leaseMillis;
+      }
+      catch (NoSuchFileException ex)
+      {
+         // deleted by a process that has finished taking over the lease
+         return false;
+      }
+   }
+
+   private void releaseKey(String key) throws IOException
+   {
+      if (!held.remove(key))
+         return;
+
+      // if the lease was taken over, it now belongs to another process
+      Path lease = leaseDir.resolve(key);
+      try
+      {
+         if (owner.equals(readOwner(lease)))
+            Files.deleteIfExists(lease);
+      }
+      catch (NoSuchFileException ex)
+      {
+         // already gone
+      }
+   }
+
+   /**
+    * Renews all leases held by this process. Called periodically by the renewal thread;
+    * visible for testing.
+    */
+   void renewAll()
+   {
+      FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+      for (String key : held)
+      {
+         Path lease = leaseDir.resolve(key);
+         try
+         {
+            if (!owner.equals(readOwner(lease)))
+            {
+               lost(key);
+               continue;
+            }
+
+            Files.setLastModifiedTime(lease, now);
+         }
+         catch (NoSuchFileException ex)
+         {
+            lost(key);
+         }
+         catch (IOException ex)
+         {
+            System.err.println("Failed to renew lease [" + key + "]: " + ex);
+         }
+      }
+   }
+
+   private void lost(String key)
+   {
+      // HACK the lease was taken over by another process. We keep processing the item;
+      //      the results will be written twice.
+      System.err.println("Lost lease [" + key + "] to another process.");
+      held.remove(key);
+   }
+
+   /**
+    * @return The owner recorded in a lease file. Empty if the owner has not yet been written.
+    */
+   private static String readOwner(Path lease) throws IOException
+   {
+      List<String> lines = Files.readAllLines(lease, StandardCharsets.UTF_8);
+      return (lines.size() < 2) ? "" : lines.get(1);
+   }
+
+   /**
+    * @return A file name for the supplied item that is unique to the item and safe to use
+    *       on any file system.
+    */
+   private static String toKey(String item)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < item.length() && sb.length() < 100; i++)
+      {
+         char c = item.charAt(i);
+         boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+         sb.append(safe ? c : '_');
+      }
+
+      // the sanitized name may collide for distinct items, so qualify it with a hash
+      return sb.append('.').append(Integer.toHexString(item.hashCode())).toString();
+   }
+}
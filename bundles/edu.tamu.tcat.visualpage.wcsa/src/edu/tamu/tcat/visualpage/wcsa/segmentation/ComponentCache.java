@@ -0,0 +1,271 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import edu.tamu.tcat.dia.binarization.BinarizationException;
+
+/**
+ * An on-disk cache of the connected components extracted from page images. Allows repeated
+ * runs over the same pages (for example, while tuning downstream thresholds) to skip
+ * binarization and labeling, and to skip decoding for stages that need only the components.
+ *
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the content of the source image file combined
+ * with the parameters of the extractor and a caller-supplied description of how the image
+ * was decoded. Renaming or moving a page does not invalidate its entry, while any change to
+ * its content or to the extraction parameters does. Since every foreground pixel of the page
+ * belongs to exactly one run, the runs of the cached components are also the cached
+ * binarization, so a cache hit skips both binarization and labeling. Entries are stored in
+ * {@link ComponentSetFormat}.
+ *
+ * <p>
+ * The total size of the cache is bounded. When an entry is added that takes the cache over
+ * its limit, the least recently used entries are deleted. Recency is recorded in the
+ * modification time of each entry so that it persists across runs.
+ *
+ * <p>
+ * Instances are thread safe. Multiple processes may share a cache directory; entries are
+ * written to a temporary file and moved into place, so a reader never observes a partially
+ * written entry, although the size limit is enforced independently by each process.
+ */
+public class ComponentCache
+{
+   private static final String SUFFIX = ".cc";
+
+   private final Path dir;
+   private final long maxBytes;
+
+   // entry file name to size in bytes, in order of least to most recent access
+   private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+   private long totalBytes = 0;
+
+   /**
+    * @param dir The directory in which to store cached entries. Will be created if it does
+    *       not exist.
+    * @param maxBytes The maximum total size of all entries. Must be greater than 0.
+    * @throws IOException If the cache directory could not be created or read.
+    */
+   public ComponentCache(Path dir, long maxBytes) throws IOException
+   {
+      if (maxBytes <= 0)
+         throw new IllegalArgumentException("Maximum cache size [" + maxBytes + "] must be greater than 0.");
+
+      this.dir = dir;
+      this.maxBytes = maxBytes;
+
+      Files.createDirectories(dir);
+      loadEntries();
+   }
+
+   /**
+    * Returns the components of a page, extracting and caching them if they are not
+    * already present in the cache.
+    *
+    * @param source The image file of the page.
+    * @param decoding Describes how the image supplied by {@code image} is decoded from
+    *       {@code source}, for example its subsampling. Pages decoded differently are cached
+    *       separately.
+    * @param extractor The extractor to use if the components are not cached.
+    * @param image Supplies the decoded image. Called only if the components are not cached.
+    * @return The connected components of the page.
+    * @throws IOException If the source file could not be read.
+    * @throws BinarizationException If the components were not cached and the image could
+    *       not be binarized.
+    */
+   public List<RunLengthComponent> getComponents(Path source, String decoding, ComponentExtractor extractor, Supplier<BufferedImage> image) throws IOException, BinarizationException
+   {
+      String name = computeKey(source, decoding + ";" + extractor.getParameters()) + SUFFIX;
+      List<RunLengthComponent> components = read(name);
+      if (components != null)
+         return components;
+
+      components = extractor.extract(image.get());
+      try
+      {
+         write(name, components);
+      }
+      catch (IOException ex)
+      {
+         // a failure to cache should not prevent the page from being processed
+         System.err.println("Failed to cache components for [" + source + "]: " + ex);
+      }
+
+      return components;
+   }
+
+   /**
+    * @return The total size in bytes of all entries known to this cache.
+    */
+   public synchronized long getSize()
+   {
+      return totalBytes;
+   }
+
+   private List<RunLengthComponent> read(String name)
+   {
+      // entries written by other processes are not in the index, so always check the file
+      Path file = dir.resolve(name);
+      try
+      {
+         List<RunLengthComponent> components = ComponentSetFormat.read(file);
+         Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+         add(name, Files.size(file));
+         return components;
+      }
+      catch (NoSuchFileException ex)
+      {
+         // not cached, or evicted by another process
+         remove(name);
+         return null;
+      }
+      catch (IOException | RuntimeException ex)
+      {
+         System.err.println("Discarding unreadable cache entry [" + file + "]: " + ex);
+         remove(name);
+         delete(file);
+         return null;
+      }
+   }
+
+   private void write(String name, List<RunLengthComponent> components) throws IOException
+   {
+      Path file = dir.resolve(name);
+      Path tmp = Files.createTempFile(dir, name, ".tmp");
+      try
+      {
+         ComponentSetFormat.write(tmp, components);
+
+         try
+         {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (AtomicMoveNotSupportedException ex)
+         {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+         }
+      }
+      finally
+      {
+         delete(tmp);
+      }
+
+      add(name, Files.size(file));
+   }
+
+   private synchronized void add(String name, long size)
+   {
+      Long previous = entries.put(name, Long.valueOf(size));
+      totalBytes += size - (previous == null ? 0 : previous.longValue());
+
+      Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+      while (totalBytes > maxBytes && iterator.hasNext())
+      {
+         Map.Entry<String, Long> eldest = iterator.next();
+         if (eldest.getKey().equals(name))
+            continue;
+
+         iterator.remove();
+         totalBytes -= eldest.getValue().longValue();
+         delete(dir.resolve(eldest.getKey()));
+      }
+   }
+
+   private synchronized void remove(String name)
+   {
+      Long size = entries.remove(name);
+      if (size != null)
+         totalBytes -= size.longValue();
+   }
+
+   /**
+    * Builds the in-memory index from the entries found in the cache directory, ordered
+    * by modification time.
+    */
+   private void loadEntries() throws IOException
+   {
+      List<Path> files = new ArrayList<>();
+      Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX))
+      {
+         for (Path file : stream)
+         {
+            files.add(file);
+            attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+         }
+      }
+
+      files.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+      for (Path file : files)
+      {
+         add(file.getFileName().toString(), attributes.get(file).size());
+      }
+   }
+
+   private static String computeKey(Path source, String parameters) throws IOException
+   {
+      MessageDigest digest;
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException ex)
+      {
+         throw new IllegalStateException("SHA-256 is not supported by this JVM.", ex);
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+      try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ))
+      {
+         while (channel.read(buffer) >= 0)
+         {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+         }
+      }
+
+      digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest())
+      {
+         sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+
+      return sb.toString();
+   }
+
+   private static void delete(Path file)
+   {
+      try
+      {
+         Files.deleteIfExists(file);
+      }
+      catch (IOException ex)
+      {
+         System.err.println("Failed to delete cache file [" + file + "]: " + ex);
+      }
+   }
+}
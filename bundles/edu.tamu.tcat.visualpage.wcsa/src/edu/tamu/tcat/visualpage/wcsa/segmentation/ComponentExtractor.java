@@ -0,0 +1,31 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import edu.tamu.tcat.dia.binarization.BinarizationException;
+
+/**
+ * Extracts the connected components of the foreground of a page as runs of foreground
+ * pixels. Since every foreground pixel belongs to exactly one run, the components are also
+ * a complete record of the binarized page, and may be cached in place of it (see
+ * {@link ComponentCache}).
+ *
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface ComponentExtractor
+{
+   /**
+    * @return A description of the parameters of this extractor. Two extractors with the
+    *       same description produce the same components for any given image.
+    */
+   String getParameters();
+
+   /**
+    * @param image The image to process.
+    * @return The connected components of the foreground of the image.
+    * @throws BinarizationException If the image could not be binarized.
+    */
+   List<RunLengthComponent> extract(BufferedImage image) throws BinarizationException;
+}
@@ -0,0 +1,322 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import edu.tamu.tcat.analytics.image.region.BoundingBox;
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+
+/**
+ * Reads and writes sets of {@link RunLengthComponent}s in a compact binary format. Allows
+ * the components of a page to be handed to a later stage, in another process or job,
+ * without binarizing the page again.
+ *
+ * <p>
+ * Any collection of {@link ConnectedComponent}s may be written, provided that each of them
+ * stores its pixels as runs. The {@link ComponentExtractor}s produce such components; the
+ * components found by the two-pass {@code ConnectedComponentFinder} do not expose their
+ * pixels and are rejected.
+ *
+ * <p>
+ * A component set is a 4 byte magic number, a 1 byte version and the number of components,
+ * followed by each component in turn. A component is its sequence number, its bounds
+ * ({@code left, top, right - left, bottom - top}), its centroid relative to the top left
+ * corner of its bounds and then its pixels. Pixels are stored one row at a time from the
+ * top of the bounds as the number of runs in the row, followed by each run as the gap
+ * between the run and the end of the previous run (or the left edge of the bounds) and the
+ * length of the run minus one. All values are unsigned variable length integers, seven bits
+ * per byte, so most values occupy a single byte.
+ *
+ * <p>
+ * Bounds and centroids are stored so that they can be checked when read; a set whose
+ * pixels do not match its stored bounds and centroids is rejected as corrupt.
+ */
+public final class ComponentSetFormat
+{
+   private static final int MAGIC = 0x57434353;    // "WCCS"
+   private static final byte VERSION = 1;
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private ComponentSetFormat()
+   {
+   }
+
+   /**
+    * Writes a set of components to a file, replacing any existing content.
+    *
+    * @param file The file to write.
+    * @param components The components to write. Each must be a {@link RunLengthComponent}.
+    * @throws IOException If the file could not be written.
+    */
+   public static void write(Path file, Collection<? extends ConnectedComponent> components) throws IOException
+   {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         write(channel, components);
+      }
+   }
+
+   /**
+    * Reads a set of components from a file.
+    *
+    * @param file The file to read.
+    * @return The components, in the order in which they were written.
+    * @throws IOException If the file could not be read or is not a valid component set.
+    */
+   public static List<RunLengthComponent> read(Path file) throws IOException
+   {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         return read(channel);
+      }
+   }
+
+   /**
+    * Writes a set of components to a channel. The channel is not closed.
+    *
+    * @param channel The channel to write to.
+    * @param components The components to write. Each must be a {@link RunLengthComponent}.
+    * @throws IOException If the components could not be written.
+    */
+   public static void write(WritableByteChannel channel, Collection<? extends ConnectedComponent> components) throws IOException
+   {
+      // check every component before writing, so that nothing is written for an invalid set
+      List<RunLengthComponent> checked = new ArrayList<>(components.size());
+      for (ConnectedComponent cc : components)
+      {
+         checked.add(toRuns(cc));
+      }
+
+      Encoder out = new Encoder(channel);
+      out.buffer.putInt(MAGIC);
+      out.buffer.put(VERSION);
+      out.putVarInt(checked.size());
+      for (RunLengthComponent cc : checked)
+      {
+         BoundingBox bounds = cc.getBounds();
+         Point centroid = cc.getCentroid();
+         int left = bounds.getLeft();
+         int top = bounds.getTop();
+         int bottom = bounds.getBottom();
+
+         out.putVarInt(cc.getSequence());
+         out.putVarInt(left);
+         out.putVarInt(top);
+         out.putVarInt(bounds.getRight() - left);
+         out.putVarInt(bottom - top);
+         out.putVarInt(centroid.getX() - left);
+         out.putVarInt(centroid.getY() - top);
+
+         // runs are ordered by row and then by start column
+         int[] runs = cc.getRuns();
+         int ix = 0;
+         for (int row = top; row <= bottom; row++)
+         {
+            int end = ix;
+            while (end < runs.length && runs[end] == row)
+               end += 3;
+
+            out.putVarInt((end - ix) / 3);
+            int prevEnd = left - 1;
+            for (; ix < end; ix += 3)
+            {
+               out.putVarInt(runs[ix + 1] - prevEnd - 1);
+               out.putVarInt(runs[ix + 2] - runs[ix + 1]);
+               prevEnd = runs[ix + 2];
+            }
+         }
+      }
+
+      out.flush();
+   }
+
+   /**
+    * Reads a set of components from a channel. The channel is not closed.
+    *
+    * @param channel The channel to read from.
+    * @return The components, in the order in which they were written.
+    * @throws IOException If the components could not be read or the data is not a valid
+    *       component set.
+    */
+   public static List<RunLengthComponent> read(ReadableByteChannel channel) throws IOException
+   {
+      Decoder in = new Decoder(channel);
+      in.require(5);
+      if (in.buffer.getInt() != MAGIC)
+         throw new IOException("Not a component set.");
+
+      byte version = in.buffer.get();
+      if (version != VERSION)
+         throw new IOException("Unsupported component set version [" + version + "].");
+
+      int size = in.getVarInt();
+      List<RunLengthComponent> components = new ArrayList<>(Math.min(size, 1 << 16));
+      int[] runs = new int[3 * 64];
+      for (int i = 0; i < size; i++)
+      {
+         int sequence = in.getVarInt();
+         int left = in.getVarInt();
+         int top = in.getVarInt();
+         int right = left + in.getVarInt();
+         int bottom = top + in.getVarInt();
+         int cx = left + in.getVarInt();
+         int cy = top + in.getVarInt();
+
+         int len = 0;
+         for (int row = top; row <= bottom; row++)
+         {
+            int numRuns = in.getVarInt();
+            int prevEnd = left - 1;
+            for (int j = 0; j < numRuns; j++)
+            {
+               int start = prevEnd + 1 + in.getVarInt();
+               int end = start + in.getVarInt();
+               if (len + 3 > runs.length)
+                  runs = Arrays.copyOf(runs, runs.length * 2);
+
+               runs[len++] = row;
+               runs[len++] = start;
+               runs[len++] = end;
+               prevEnd = end;
+            }
+         }
+
+         if (len == 0)
+            throw new IOException("Corrupt component set. Component [" + sequence + "] has no pixels.");
+
+         RunLengthComponent cc = new RunLengthComponent(sequence, Arrays.copyOf(runs, len));
+         BoundingBox bounds = cc.getBounds();
+         Point centroid = cc.getCentroid();
+         if (bounds.getLeft() != left || bounds.getTop() != top || bounds.getRight() != right || bounds.getBottom() != bottom
+               || centroid.getX() != cx || centroid.getY() != cy)
+            throw new IOException("Corrupt component set. The pixels of component [" + sequence + "] do not match its bounds.");
+
+         components.add(cc);
+      }
+
+      return components;
+   }
+
+   private static RunLengthComponent toRuns(ConnectedComponent cc)
+   {
+      if (cc instanceof RunLengthComponent)
+         return (RunLengthComponent)cc;
+
+      throw new IllegalArgumentException("Cannot write component [" + cc.getSequence() + "] of type [" + cc.getClass().getName() + "]. Only components stored as runs can be written.");
+   }
+
+   /**
+    * Buffers encoded values, writing them to the channel as the buffer fills.
+    */
+   private static class Encoder
+   {
+      // the most bytes needed to encode a single value
+      private static final int MAX_VALUE_BYTES = 5;
+
+      private final WritableByteChannel channel;
+      private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+      Encoder(WritableByteChannel channel)
+      {
+         this.channel = channel;
+      }
+
+      void putVarInt(int value) throws IOException
+      {
+         if (value < 0)
+            throw new IllegalArgumentException("Cannot encode negative value [" + value + "].");
+
+         if (buffer.remaining() < MAX_VALUE_BYTES)
+            drain();
+
+         while ((value & ~0x7f) != 0)
+         {
+            buffer.put((byte)((value & 0x7f) | 0x80));
+            value >>>= 7;
+         }
+
+         buffer.put((byte)value);
+      }
+
+      void flush() throws IOException
+      {
+         drain();
+      }
+
+      private void drain() throws IOException
+      {
+         buffer.flip();
+         while (buffer.hasRemaining())
+         {
+            channel.write(buffer);
+         }
+
+         buffer.clear();
+      }
+   }
+
+   /**
+    * Reads encoded values, refilling the buffer from the channel as it is consumed.
+    */
+   private static class Decoder
+   {
+      private final ReadableByteChannel channel;
+      private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+      Decoder(ReadableByteChannel channel)
+      {
+         this.channel = channel;
+         buffer.flip();
+      }
+
+      int getVarInt() throws IOException
+      {
+         int value = 0;
+         for (int shift = 0; shift < 32; shift += 7)
+         {
+            if (!buffer.hasRemaining())
+               require(1);
+
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+            {
+               if (value < 0)
+                  break;
+               return value;
+            }
+         }
+
+         throw new IOException("Corrupt component set. Invalid variable length integer.");
+      }
+
+      /**
+       * Ensures that at least {@code n} bytes are available in the buffer.
+       */
+      void require(int n) throws IOException
+      {
+         if (buffer.remaining() >= n)
+            return;
+
+         buffer.compact();
+         while (buffer.position() < n)
+         {
+            if (channel.read(buffer) < 0)
+               throw new EOFException("Unexpected end of component set.");
+         }
+
+         buffer.flip();
+      }
+   }
+}
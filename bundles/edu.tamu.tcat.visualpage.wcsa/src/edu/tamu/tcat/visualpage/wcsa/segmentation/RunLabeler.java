@@ -0,0 +1,141 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Labels foreground runs row by row, merging labels of runs that touch runs of the
+ * previous row (8-connectivity). Rows must be added in order, and the runs of each row
+ * in order of their start.
+ */
+class RunLabeler
+{
+   // all runs, as (row, start, end, label)
+   private int[] runs = new int[4 * 1024];
+   private int numRuns = 0;
+
+   // index of the first run of the previous and current rows
+   private int prevRowStart = 0;
+   private int currRowStart = 0;
+   private int prevCursor = 0;
+
+   // union-find over run labels
+   private int[] parent = new int[1024];
+   private int numLabels = 0;
+
+   void addRun(int row, int start, int end)
+   {
+      int label = -1;
+
+      // 8-connectivity: runs touch if they overlap when extended by one pixel
+      while (prevCursor < currRowStart && runs[4 * prevCursor + 2] < start - 1)
+         prevCursor++;
+
+      for (int i = prevCursor; i < currRowStart && runs[4 * i + 1] <= end + 1; i++)
+      {
+         int other = runs[4 * i + 3];
+         if (label < 0)
+            label = find(other);
+         else
+            label = union(label, other);
+      }
+
+      if (label < 0)
+         label = makeSet();
+
+      if (4 * (numRuns + 1) > runs.length)
+         runs = Arrays.copyOf(runs, runs.length * 2);
+
+      int ix = 4 * numRuns++;
+      runs[ix] = row;
+      runs[ix + 1] = start;
+      runs[ix + 2] = end;
+      runs[ix + 3] = label;
+   }
+
+   void endRow()
+   {
+      prevRowStart = currRowStart;
+      currRowStart = numRuns;
+      prevCursor = prevRowStart;
+   }
+
+   List<RunLengthComponent> build()
+   {
+      // assign component indices to root labels in order of first appearance
+      int[] component = new int[numLabels];
+      Arrays.fill(component, -1);
+      int[] runCounts = new int[numLabels];
+      int numComponents = 0;
+      for (int i = 0; i < numRuns; i++)
+      {
+         int root = find(runs[4 * i + 3]);
+         if (component[root] < 0)
+            component[root] = numComponents++;
+         runCounts[component[root]]++;
+      }
+
+      int[][] componentRuns = new int[numComponents][];
+      int[] filled = new int[numComponents];
+      for (int i = 0; i < numRuns; i++)
+      {
+         int c = component[find(runs[4 * i + 3])];
+         if (componentRuns[c] == null)
+            componentRuns[c] = new int[3 * runCounts[c]];
+
+         int[] dest = componentRuns[c];
+         int ix = filled[c];
+         dest[ix] = runs[4 * i];
+         dest[ix + 1] = runs[4 * i + 1];
+         dest[ix + 2] = runs[4 * i + 2];
+         filled[c] = ix + 3;
+      }
+
+      List<RunLengthComponent> result = new ArrayList<>(numComponents);
+      for (int c = 0; c < numComponents; c++)
+      {
+         result.add(new RunLengthComponent(c, componentRuns[c]));
+      }
+
+      return result;
+   }
+
+   private int makeSet()
+   {
+      if (numLabels == parent.length)
+         parent = Arrays.copyOf(parent, parent.length * 2);
+
+      parent[numLabels] = numLabels;
+      return numLabels++;
+   }
+
+   private int find(int label)
+   {
+      while (parent[label] != label)
+      {
+         parent[label] = parent[parent[label]];    // path halving
+         label = parent[label];
+      }
+
+      return label;
+   }
+
+   private int union(int a, int b)
+   {
+      int rootA = find(a);
+      int rootB = find(b);
+      if (rootA == rootB)
+         return rootA;
+
+      // link to the older label so that roots are stable
+      if (rootA < rootB)
+      {
+         parent[rootB] = rootA;
+         return rootA;
+      }
+
+      parent[rootA] = rootB;
+      return rootB;
+   }
+}
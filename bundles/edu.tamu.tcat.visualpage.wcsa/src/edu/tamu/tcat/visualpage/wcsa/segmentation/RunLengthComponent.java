@@ -0,0 +1,109 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.util.Arrays;
+
+import edu.tamu.tcat.analytics.image.region.BoundingBox;
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.analytics.image.region.SimpleBoundingBox;
+import edu.tamu.tcat.analytics.image.region.SimplePoint;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+
+/**
+ * A connected component whose pixels are stored as horizontal runs. Each run is a
+ * {@code (row, startColumn, endColumn)} triple with inclusive column bounds. Runs are
+ * ordered by row and then by start column.
+ */
+public class RunLengthComponent implements ConnectedComponent
+{
+   private final int sequence;
+   private final BoundingBox bounds;
+   private final Point centroid;
+   private final int numPixels;
+   private final int[] runs;
+
+   /**
+    * @param sequence The sequence number of this component on its page.
+    * @param runs The runs that make up this component, stored as consecutive
+    *       {@code (row, startColumn, endColumn)} triples. Must not be empty and must not be
+    *       modified by the caller after construction.
+    */
+   public RunLengthComponent(int sequence, int[] runs)
+   {
+      if (runs.length == 0 || runs.length % 3 != 0)
+         throw new IllegalArgumentException("Invalid run data. Expected a non-empty array of (row, start, end) triples.");
+
+      this.sequence = sequence;
+      this.runs = runs;
+
+      int left = Integer.MAX_VALUE;
+      int top = Integer.MAX_VALUE;
+      int right = Integer.MIN_VALUE;
+      int bottom = Integer.MIN_VALUE;
+      long sumX = 0;
+      long sumY = 0;
+      long ct = 0;
+      for (int i = 0; i < runs.length; i += 3)
+      {
+         int row = runs[i];
+         int start = runs[i + 1];
+         int end = runs[i + 2];
+         int len = end - start + 1;
+
+         left = Math.min(left, start);
+         right = Math.max(right, end);
+         top = Math.min(top, row);
+         bottom = Math.max(bottom, row);
+
+         sumX += (long)(start + end) * len / 2;
+         sumY += (long)row * len;
+         ct += len;
+      }
+
+      this.numPixels = (int)ct;
+      this.bounds = new SimpleBoundingBox(left, top, right, bottom);
+      this.centroid = new SimplePoint((int)Math.round((double)sumX / ct), (int)Math.round((double)sumY / ct));
+   }
+
+   @Override
+   public int getSequence()
+   {
+      return sequence;
+   }
+
+   @Override
+   public BoundingBox getBounds()
+   {
+      return bounds;
+   }
+
+   @Override
+   public Point getCentroid()
+   {
+      return centroid;
+   }
+
+   /**
+    * @return The number of foreground pixels in this component.
+    */
+   public int getNumberOfPixels()
+   {
+      return numPixels;
+   }
+
+   /**
+    * @return The number of runs in this component.
+    */
+   public int getNumberOfRuns()
+   {
+      return runs.length / 3;
+   }
+
+   /**
+    * @return A copy of the runs of this component, as consecutive
+    *       {@code (row, startColumn, endColumn)} triples.
+    */
+   public int[] getRuns()
+   {
+      return Arrays.copyOf(runs, runs.length);
+   }
+}
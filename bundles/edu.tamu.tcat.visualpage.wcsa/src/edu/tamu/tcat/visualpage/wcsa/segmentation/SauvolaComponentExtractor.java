@@ -0,0 +1,208 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.List;
+
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+
+/**
+ * Extracts the connected components of the foreground of a page in a single pass over the
+ * rows of the image, fusing Sauvola thresholding with component labeling.
+ *
+ * <p>
+ * The local mean and variance used by the Sauvola threshold are computed from running
+ * column sums over a vertical window of rows, combined with a per-row prefix sum, rather
+ * than from a full-page integral image. Each row is thresholded as soon as the window
+ * below it has been read, and its foreground runs are immediately labeled against the runs
+ * of the previous row (8-connectivity) using a union-find over run labels. Neither the
+ * integral image nor the binary image is ever materialized. Working memory is proportional
+ * to {@code width x windowSize} plus the number of foreground runs on the page.
+ *
+ * <p>
+ * Sauvola's threshold for a pixel is {@code T = m * (1 + k * (s / R - 1))} where {@code m}
+ * and {@code s} are the mean and standard deviation of the gray levels within the window
+ * centered on that pixel. Pixels darker than {@code T} are foreground.
+ *
+ * <p>
+ * The components found have not yet been verified against those of the two-pass
+ * {@link TwoPassComponentExtractor}, which remains the default for page analysis. Since
+ * binarization and labeling are fused, all of the time spent is recorded as
+ * {@link MetricsRegistry#COMPONENTS}.
+ *
+ * @see J. Sauvola and M. Pietikainen, "Adaptive document image binarization," Pattern
+ *       Recognition 33(2), 2000.
+ */
+public class SauvolaComponentExtractor implements ComponentExtractor
+{
+   public static final int DEFAULT_WINDOW_SIZE = 25;
+   public static final double DEFAULT_K = 0.3;
+   public static final double DEFAULT_R = 128;
+
+   private final int halfWindow;
+   private final double k;
+   private final double r;
+
+   public SauvolaComponentExtractor()
+   {
+      this(DEFAULT_WINDOW_SIZE, DEFAULT_K, DEFAULT_R);
+   }
+
+   /**
+    * @param windowSize The width and height of the local window in pixels. Should be odd.
+    * @param k Sauvola's {@code k} parameter, controlling the influence of the local
+    *       standard deviation on the threshold.
+    * @param r Sauvola's {@code R} parameter, the dynamic range of the standard deviation.
+    */
+   public SauvolaComponentExtractor(int windowSize, double k, double r)
+   {
+      if (windowSize <= 0)
+         throw new IllegalArgumentException("Window size [" + windowSize + "] must be greater than 0.");
+
+      this.halfWindow = windowSize / 2;
+      this.k = k;
+      this.r = r;
+   }
+
+   @Override
+   public String getParameters()
+   {
+      return "sauvola[window=" + (2 * halfWindow + 1) + ", k=" + k + ", r=" + r + "]";
+   }
+
+   /**
+    * @param image The image to process. Color images are converted to luminance.
+    * @return The connected components of the foreground of the image, with sequence numbers
+    *       assigned consecutively from 0 in raster order of their first pixel.
+    */
+   @Override
+   public List<RunLengthComponent> extract(BufferedImage image)
+   {
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.COMPONENTS))
+      {
+         return label(image);
+      }
+   }
+
+   private List<RunLengthComponent> label(BufferedImage image)
+   {
+      int width = image.getWidth();
+      int height = image.getHeight();
+      int hw = halfWindow;
+
+      // ring buffer of luminance rows, large enough to hold the window plus the row leaving it
+      int ringSize = 2 * hw + 2;
+      int[][] ring = new int[ringSize][];
+      long[] colSum = new long[width];
+      long[] colSumSq = new long[width];
+      long[] prefix = new long[width + 1];
+      long[] prefixSq = new long[width + 1];
+
+      RowReader reader = new RowReader(image);
+      RunLabeler labeler = new RunLabeler();
+
+      int loaded = 0;
+      for (int y = 0; y < height; y++)
+      {
+         int out = y - hw - 1;
+         if (out >= 0)
+            accumulate(ring[out % ringSize], colSum, colSumSq, -1);
+
+         int last = Math.min(height - 1, y + hw);
+         while (loaded <= last)
+         {
+            int slot = loaded % ringSize;
+            if (ring[slot] == null)
+               ring[slot] = new int[width];
+            reader.read(loaded, ring[slot]);
+            accumulate(ring[slot], colSum, colSumSq, 1);
+            loaded++;
+         }
+
+         for (int x = 0; x < width; x++)
+         {
+            prefix[x + 1] = prefix[x] + colSum[x];
+            prefixSq[x + 1] = prefixSq[x] + colSumSq[x];
+         }
+
+         int numRows = last - Math.max(0, y - hw) + 1;
+         int[] lum = ring[y % ringSize];
+         int runStart = -1;
+         for (int x = 0; x < width; x++)
+         {
+            int left = Math.max(0, x - hw);
+            int right = Math.min(width - 1, x + hw);
+            double n = numRows * (right - left + 1);
+            double mean = (prefix[right + 1] - prefix[left]) / n;
+            double variance = (prefixSq[right + 1] - prefixSq[left]) / n - mean * mean;
+            double stdDev = Math.sqrt(Math.max(0, variance));
+            double threshold = mean * (1 + k * (stdDev / r - 1));
+
+            boolean foreground = lum[x] < threshold;
+            if (foreground && runStart < 0)
+            {
+               runStart = x;
+            }
+            else if (!foreground && runStart >= 0)
+            {
+               labeler.addRun(y, runStart, x - 1);
+               runStart = -1;
+            }
+         }
+
+         if (runStart >= 0)
+            labeler.addRun(y, runStart, width - 1);
+         labeler.endRow();
+      }
+
+      return labeler.build();
+   }
+
+   private static void accumulate(int[] row, long[] colSum, long[] colSumSq, int sign)
+   {
+      for (int x = 0; x < row.length; x++)
+      {
+         int v = row[x];
+         colSum[x] += sign * v;
+         colSumSq[x] += sign * v * v;
+      }
+   }
+
+   /**
+    * Reads rows of an image as 8-bit luminance values.
+    */
+   private static class RowReader
+   {
+      private final BufferedImage image;
+      private final boolean gray;
+      private final int[] rgb;
+
+      RowReader(BufferedImage image)
+      {
+         this.image = image;
+         this.gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+         this.rgb = gray ? null : new int[image.getWidth()];
+      }
+
+      void read(int y, int[] row)
+      {
+         int width = image.getWidth();
+         if (gray)
+         {
+            Raster raster = image.getRaster();
+            raster.getSamples(0, y, width, 1, 0, row);
+            return;
+         }
+
+         image.getRGB(0, y, width, 1, rgb, 0, width);
+         for (int x = 0; x < width; x++)
+         {
+            int p = rgb[x];
+            int red = (p >> 16) & 0xff;
+            int green = (p >> 8) & 0xff;
+            int blue = p & 0xff;
+            row[x] = (red * 299 + green * 587 + blue * 114) / 1000;
+         }
+      }
+   }
+}
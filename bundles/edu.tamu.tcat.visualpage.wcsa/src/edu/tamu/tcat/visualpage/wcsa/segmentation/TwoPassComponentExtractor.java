@@ -0,0 +1,122 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Set;
+
+import edu.tamu.tcat.analytics.image.integral.IntegralImage;
+import edu.tamu.tcat.analytics.image.integral.IntegralImageImpl;
+import edu.tamu.tcat.dia.binarization.BinarizationException;
+import edu.tamu.tcat.dia.binarization.BinaryImage;
+import edu.tamu.tcat.dia.binarization.sauvola.FastSauvola;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectComponentSet;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.dia.segmentation.cc.twopass.ConnectedComponentFinder;
+import edu.tamu.tcat.visualpage.wcsa.metrics.MetricsRegistry;
+
+/**
+ * Extracts the connected components of the foreground of a page by binarizing a full-page
+ * integral image with {@link FastSauvola} and labeling the binary image with the two-pass
+ * {@link ConnectedComponentFinder}.
+ *
+ * <p>
+ * This is the reference extraction chain and is used by default. The streaming
+ * {@link SauvolaComponentExtractor} uses far less memory, but its parameters and luminance
+ * conversion have not yet been verified to reproduce the components found by this chain,
+ * so it must be enabled explicitly.
+ *
+ * <p>
+ * Components may also be {@link #extract(BufferedImage) extracted as runs}, so that they
+ * can be stored in a {@link ComponentCache}. The page is binarized in the same way, but the
+ * foreground runs of the binary image are labeled with 8-connectivity by a run labeler
+ * rather than by {@link ConnectedComponentFinder}, and sequence numbers are assigned in
+ * raster order. Since a cache hit returns exactly the runs that were stored, pages are
+ * segmented identically whether or not their components were cached.
+ *
+ * <p>
+ * The two passes are timed separately, as {@link MetricsRegistry#BINARIZE} and
+ * {@link MetricsRegistry#COMPONENTS}.
+ */
+public class TwoPassComponentExtractor implements ComponentExtractor
+{
+   private final FastSauvola binarizer = new FastSauvola();
+
+   @Override
+   public String getParameters()
+   {
+      return "two-pass[fast-sauvola]";
+   }
+
+   /**
+    * @param image The image to process.
+    * @return The connected components of the foreground of the image, as found by
+    *       {@link ConnectedComponentFinder}.
+    * @throws BinarizationException If the image could not be binarized.
+    */
+   public Set<ConnectedComponent> findComponents(BufferedImage image) throws BinarizationException
+   {
+      BinaryImage binaryImage = binarize(image);
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.COMPONENTS))
+      {
+         ConnectedComponentFinder finder = new ConnectedComponentFinder(binaryImage, 100_000);
+         ConnectComponentSet components = finder.call();
+
+         return components.asSet();
+      }
+   }
+
+   /**
+    * @param image The image to process.
+    * @return The connected components of the foreground of the image, with sequence numbers
+    *       assigned consecutively from 0 in raster order of their first pixel.
+    * @throws BinarizationException If the image could not be binarized.
+    */
+   @Override
+   public List<RunLengthComponent> extract(BufferedImage image) throws BinarizationException
+   {
+      BinaryImage binaryImage = binarize(image);
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.COMPONENTS))
+      {
+         int width = image.getWidth();
+         int height = image.getHeight();
+         if (binaryImage.getSize() != width * height)
+            throw new IllegalStateException("Binary image size [" + binaryImage.getSize() + "] does not match the page [" + width + "x" + height + "].");
+
+         // the binary image is indexed in row-major order
+         RunLabeler labeler = new RunLabeler();
+         for (int y = 0; y < height; y++)
+         {
+            int offset = y * width;
+            int runStart = -1;
+            for (int x = 0; x < width; x++)
+            {
+               boolean foreground = binaryImage.isForeground(offset + x);
+               if (foreground && runStart < 0)
+               {
+                  runStart = x;
+               }
+               else if (!foreground && runStart >= 0)
+               {
+                  labeler.addRun(y, runStart, x - 1);
+                  runStart = -1;
+               }
+            }
+
+            if (runStart >= 0)
+               labeler.addRun(y, runStart, width - 1);
+            labeler.endRow();
+         }
+
+         return labeler.build();
+      }
+   }
+
+   private BinaryImage binarize(BufferedImage image) throws BinarizationException
+   {
+      try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time(MetricsRegistry.BINARIZE))
+      {
+         IntegralImage integralImage = IntegralImageImpl.create(image);
+         return binarizer.binarize(integralImage);
+      }
+   }
+}
@@ -0,0 +1,101 @@
+package edu.tamu.tcat.visualpage.wcsa;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.fitting.PolynomialCurveFitter;
+import org.apache.commons.math3.fitting.WeightedObservedPoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.tamu.tcat.visualpage.wcsa.Polynomial.CriticalPoint;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages;
+
+/**
+ * Measures fitting a polynomial to an angle histogram and locating its critical points,
+ * as is done for every page by the docstrum angle histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PolynomialBenchmark
+{
+   private static final int NUM_BINS = 360;
+   private static final int DEGREE = 5;
+
+   private double[] histogram;
+   private Polynomial fitted;
+   private double[] domain;
+
+   @Setup
+   public void setup()
+   {
+      // a normalized histogram with a single noisy peak about horizontal
+      Random rand = new Random(SyntheticPages.SEED);
+      histogram = new double[NUM_BINS];
+      double sum = 0;
+      for (int i = 0; i < NUM_BINS; i++)
+      {
+         double x = (i - NUM_BINS / 2.0) / 40.0;
+         histogram[i] = Math.exp(-x * x) + 0.05 * rand.nextDouble();
+         sum += histogram[i];
+      }
+
+      for (int i = 0; i < NUM_BINS; i++)
+      {
+         histogram[i] /= sum;
+      }
+
+      fitted = Polynomial.fit(histogram, DEGREE);
+      domain = new double[NUM_BINS];
+      for (int i = 0; i < NUM_BINS; i++)
+      {
+         domain[i] = i;
+      }
+   }
+
+   @Benchmark
+   public Polynomial fit()
+   {
+      return Polynomial.fit(histogram, DEGREE);
+   }
+
+   @Benchmark
+   public double[] fitIteratively()
+   {
+      // the Levenberg-Marquardt fit previously used by Polynomial.fit
+      PolynomialCurveFitter fitter = PolynomialCurveFitter.create(DEGREE);
+      return fitter.fit(IntStream.range(0, NUM_BINS)
+            .mapToObj(i -> new WeightedObservedPoint(1, i, histogram[i]))
+            .collect(Collectors.toList()));
+   }
+
+   @Benchmark
+   public List<CriticalPoint> findCriticalPoints()
+   {
+      return fitted.findCriticalPoints(0, NUM_BINS);
+   }
+
+   @Benchmark
+   public double[] evaluate()
+   {
+      double[] out = new double[NUM_BINS];
+      fitted.evaluate(domain, out);
+      return out;
+   }
+}
@@ -0,0 +1,35 @@
+package edu.tamu.tcat.visualpage.wcsa.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the layout analysis benchmarks with the allocation profiler enabled and writes the
+ * results as JSON so that runs from before and after a change can be compared.
+ *
+ * <p>
+ * Usage: {@code BenchmarkRunner [pattern [resultFile]]}. The pattern is a regular
+ * expression matched against benchmark names and defaults to all benchmarks. The results
+ * file defaults to {@code jmh-result.json} in the working directory.
+ */
+public class BenchmarkRunner
+{
+   public static void main(String[] args) throws RunnerException
+   {
+      String pattern = (args.length > 0) ? args[0] : "edu\\.tamu\\.tcat\\.visualpage\\.wcsa\\..*Benchmark";
+      String resultFile = (args.length > 1) ? args[1] : "jmh-result.json";
+
+      Options opts = new OptionsBuilder()
+            .include(pattern)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(resultFile)
+            .build();
+
+      new Runner(opts).run();
+   }
+}
@@ -0,0 +1,272 @@
+package edu.tamu.tcat.visualpage.wcsa.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.visualpage.wcsa.importer.DirectoryImporter;
+import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
+import edu.tamu.tcat.visualpage.wcsa.segmentation.SauvolaComponentExtractor;
+
+/**
+ * Generates synthetic page images for use by the benchmarks. Pages are drawn from a seeded
+ * random source so that every run of a benchmark sees exactly the same input.
+ *
+ * <p>
+ * Glyphs are drawn as small filled rectangles grouped into words and lines. This is
+ * sufficient to exercise the layout analysis, which only considers the bounds and
+ * centroids of connected components.
+ */
+public final class SyntheticPages
+{
+   public static final int WIDTH = 2000;
+   public static final int HEIGHT = 3000;
+   public static final long SEED = 0x5eed_2015L;
+
+   private static final int MARGIN = 150;
+   private static final int LINE_HEIGHT = 24;
+   private static final int GLYPH_SPACING = 3;
+   private static final int WORD_SPACING = 11;
+
+   /**
+    * The kinds of page that may be generated.
+    */
+   public static enum PageType
+   {
+      /** Two columns of horizontal text. */
+      TEXT,
+      /** Two columns of text rotated by a few degrees, as for a skewed scan. */
+      SKEWED,
+      /** A single column of text with line art and filled figures. */
+      ILLUSTRATED
+   }
+
+   private SyntheticPages()
+   {
+   }
+
+   /**
+    * @param type The type of page to generate.
+    * @return A new grayscale page of the requested type.
+    */
+   public static BufferedImage create(PageType type)
+   {
+      switch (type)
+      {
+         case TEXT:
+            return textColumns(WIDTH, HEIGHT, 2, 0, SEED);
+         case SKEWED:
+            return textColumns(WIDTH, HEIGHT, 2, Math.toRadians(3), SEED);
+         case ILLUSTRATED:
+            return illustrated(WIDTH, HEIGHT, SEED);
+         default:
+            throw new IllegalArgumentException("Unsupported page type [" + type + "]");
+      }
+   }
+
+   /**
+    * Generates a page of text arranged in columns.
+    *
+    * @param width The width of the page.
+    * @param height The height of the page.
+    * @param columns The number of text columns.
+    * @param skew The angle (in radians) by which to rotate the text about the center of
+    *       the page.
+    * @param seed The seed for the random source.
+    * @return The generated page.
+    */
+   public static BufferedImage textColumns(int width, int height, int columns, double skew, long seed)
+   {
+      Random rand = new Random(seed);
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+      Graphics2D g = createGraphics(image);
+      g.rotate(skew, width / 2.0, height / 2.0);
+
+      int gutter = 60;
+      int columnWidth = (width - 2 * MARGIN - (columns - 1) * gutter) / columns;
+      for (int c = 0; c < columns; c++)
+      {
+         int left = MARGIN + c * (columnWidth + gutter);
+         drawText(g, rand, left, MARGIN, columnWidth, height - 2 * MARGIN);
+      }
+
+      g.dispose();
+      return image;
+   }
+
+   /**
+    * Generates a page with a column of text beside line art and filled figures.
+    *
+    * @param width The width of the page.
+    * @param height The height of the page.
+    * @param seed The seed for the random source.
+    * @return The generated page.
+    */
+   public static BufferedImage illustrated(int width, int height, long seed)
+   {
+      Random rand = new Random(seed);
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+      Graphics2D g = createGraphics(image);
+
+      int textWidth = (width - 2 * MARGIN) / 2;
+      drawText(g, rand, MARGIN, MARGIN, textWidth, height - 2 * MARGIN);
+
+      // figure: a hatched frame, a filled disc and a scattering of stipple marks
+      int figLeft = MARGIN + textWidth + 60;
+      int figWidth = width - MARGIN - figLeft;
+      int figTop = MARGIN;
+      int figHeight = (height - 2 * MARGIN) / 2;
+
+      g.drawRect(figLeft, figTop, figWidth, figHeight);
+      for (int x = figLeft; x < figLeft + figWidth; x += 17)
+      {
+         g.drawLine(x, figTop, x + figHeight / 4, figTop + figHeight / 4);
+      }
+
+      g.fillOval(figLeft + figWidth / 4, figTop + figHeight / 3, figWidth / 2, figWidth / 2);
+      for (int i = 0; i < 600; i++)
+      {
+         int x = figLeft + rand.nextInt(figWidth);
+         int y = figTop + figHeight + 40 + rand.nextInt(figHeight - 80);
+         int sz = 1 + rand.nextInt(4);
+         g.fillRect(x, y, sz, sz);
+      }
+
+      g.dispose();
+      return image;
+   }
+
+   /**
+    * Extracts the connected components of a page.
+    *
+    * @param image The page.
+    * @return The connected components of the page.
+    */
+   public static List<ConnectedComponent> components(BufferedImage image)
+   {
+      return new ArrayList<>(new SauvolaComponentExtractor().extract(image));
+   }
+
+   /**
+    * Generates identifiers in the styles used by HathiTrust, including characters that
+    * must be escaped when mapped to a pairtree path.
+    *
+    * @param count The number of identifiers to generate.
+    * @param seed The seed for the random source.
+    * @return The generated identifiers.
+    */
+   public static String[] identifiers(int count, long seed)
+   {
+      Random rand = new Random(seed);
+      String[] ids = new String[count];
+      for (int i = 0; i < count; i++)
+      {
+         switch (i % 3)
+         {
+            case 0:
+               ids[i] = "mdp." + (39015000000000L + Math.abs(rand.nextLong() % 1_000_000_000L));
+               break;
+            case 1:
+               ids[i] = "uc1.$b" + (100000 + rand.nextInt(900000));
+               break;
+            default:
+               ids[i] = "loc.ark:/13960/t" + Long.toString(Math.abs(rand.nextLong()), 36).substring(0, 8);
+               break;
+         }
+      }
+
+      return ids;
+   }
+
+   /**
+    * Writes a page to disk and returns a proxy for it. Output written through the proxy is
+    * placed in the {@code out} sub-directory of {@code dir}.
+    *
+    * @param image The page to write.
+    * @param dir The directory in which to write the page.
+    * @return A proxy for the written page.
+    * @throws IOException If the page could not be written.
+    */
+   public static ImageProxy createProxy(BufferedImage image, Path dir) throws IOException
+   {
+      Path file = dir.resolve("page.png");
+      ImageIO.write(image, "png", file.toFile());
+
+      DirectoryImporter importer = new DirectoryImporter(dir, dir.resolve("out"));
+      return new ImageProxy(importer, file);
+   }
+
+   /**
+    * Deletes a directory created for a benchmark, along with its contents.
+    *
+    * @param dir The directory to delete.
+    * @throws IOException If the directory could not be deleted.
+    */
+   public static void delete(Path dir) throws IOException
+   {
+      if (dir == null || !Files.exists(dir))
+         return;
+
+      try (Stream<Path> paths = Files.walk(dir))
+      {
+         List<Path> toDelete = new ArrayList<>();
+         paths.sorted(Comparator.reverseOrder()).forEach(toDelete::add);
+         for (Path p : toDelete)
+         {
+            Files.delete(p);
+         }
+      }
+   }
+
+   private static Graphics2D createGraphics(BufferedImage image)
+   {
+      Graphics2D g = image.createGraphics();
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, image.getWidth(), image.getHeight());
+      g.setColor(Color.BLACK);
+      return g;
+   }
+
+   private static void drawText(Graphics2D g, Random rand, int left, int top, int width, int height)
+   {
+      for (int y = top; y + LINE_HEIGHT <= top + height; y += LINE_HEIGHT)
+      {
+         int x = left;
+         int right = left + width;
+
+         // leave the occasional short line to mark the end of a paragraph
+         if (rand.nextInt(12) == 0)
+            right = left + width / 3 + rand.nextInt(width / 2);
+
+         while (x < right)
+         {
+            int wordLength = 1 + rand.nextInt(9);
+            for (int i = 0; i < wordLength && x < right; i++)
+            {
+               int w = 5 + rand.nextInt(7);
+               int h = 9 + rand.nextInt(4);
+               boolean ascender = rand.nextInt(5) == 0;
+               boolean descender = !ascender && rand.nextInt(6) == 0;
+
+               int glyphTop = y + (ascender ? 0 : 4);
+               int glyphHeight = h - (ascender ? 0 : 4) + (descender ? 5 : 0);
+               g.fillRect(x, glyphTop, w, glyphHeight);
+               x += w + GLYPH_SPACING;
+            }
+
+            x += WORD_SPACING;
+         }
+      }
+   }
+}
@@ -0,0 +1,54 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages.PageType;
+
+/**
+ * Measures construction of the angle histogram (including the polynomial fit) from the
+ * adjacency table of a page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AngleHistogramBenchmark
+{
+   @Param({"TEXT", "SKEWED", "ILLUSTRATED"})
+   public PageType page;
+
+   private NeighborTable adjTable;
+
+   @Setup
+   public void setup()
+   {
+      List<ConnectedComponent> components = SyntheticPages.components(SyntheticPages.create(page));
+      adjTable = NeighborTable.create(components, 5);
+   }
+
+   @Benchmark
+   public void create(Blackhole bh)
+   {
+      // AngleHistogram is not visible to the generated benchmark code, so it may not be
+      // used as a return type here
+      bh.consume(AngleHistogram.create(adjTable));
+   }
+}
@@ -0,0 +1,123 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages.PageType;
+
+/**
+ * Measures the nearest neighbor search used by {@link Docstrum} to build the adjacency
+ * table for a page.
+ *
+ * <p>
+ * The sorting implementation examines every component on the page for each reference, so
+ * it is measured over a fixed sample of reference components rather than the full page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NeighborTableBenchmark
+{
+   private static final int K = 5;
+   private static final int SAMPLE_SIZE = 64;
+
+   @Param({"TEXT", "SKEWED", "ILLUSTRATED"})
+   public PageType page;
+
+   private Set<ConnectedComponent> components;
+   private List<ConnectedComponent> sample;
+   private CentroidIndex index;
+
+   @Setup
+   public void setup()
+   {
+      List<ConnectedComponent> all = SyntheticPages.components(SyntheticPages.create(page));
+      components = new HashSet<>(all);
+      index = CentroidIndex.create(components);
+
+      // components are listed in page order, so an even stride samples the whole page
+      int step = Math.max(1, all.size() / SAMPLE_SIZE);
+      sample = IntStream.range(0, all.size())
+            .filter(i -> i % step == 0)
+            .limit(SAMPLE_SIZE)
+            .mapToObj(all::get)
+            .collect(Collectors.toList());
+   }
+
+   @Benchmark
+   public CentroidIndex buildIndex()
+   {
+      return CentroidIndex.create(components);
+   }
+
+   @Benchmark
+   public NeighborTable findAllNeighbors()
+   {
+      return NeighborTable.create(components, K);
+   }
+
+   @Benchmark
+   public void sampleIndexed(Blackhole bh)
+   {
+      for (ConnectedComponent ref : sample)
+      {
+         bh.consume(index.findNearest(ref, K));
+      }
+   }
+
+   @Benchmark
+   public void sampleSorted(Blackhole bh)
+   {
+      for (ConnectedComponent ref : sample)
+      {
+         bh.consume(findNearestSorted(ref, components, K));
+      }
+   }
+
+   /**
+    * The original neighbor search, which sorts every component on the page by its distance
+    * from the reference.
+    */
+   private static ConnectedComponent[] findNearestSorted(ConnectedComponent ref, Set<ConnectedComponent> components, int k)
+   {
+      Point px = ref.getCentroid();
+      SortedSet<ConnectedComponent> sorted = new TreeSet<>((a, b) -> Double.compare(distance(px, a.getCentroid()), distance(px, b.getCentroid())));
+      sorted.addAll(components);
+      sorted.remove(ref);
+
+      return sorted.stream().limit(k).toArray(ConnectedComponent[]::new);
+   }
+
+   private static double distance(Point a, Point b)
+   {
+      int x = a.getX() - b.getX();
+      int y = a.getY() - b.getY();
+
+      return Math.sqrt(x * x + y * y);
+   }
+}
@@ -0,0 +1,68 @@
+package edu.tamu.tcat.visualpage.wcsa.fletcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.tamu.tcat.dia.binarization.BinarizationException;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages.PageType;
+import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
+
+/**
+ * Measures the full text/graphics separation of a page. Debug images are not rendered, as
+ * in production runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FletcherSegmentationBenchmark
+{
+   @Param({"TEXT", "SKEWED", "ILLUSTRATED"})
+   public PageType page;
+
+   private Path dir;
+   private ImageProxy proxy;
+   private List<ConnectedComponent> components;
+
+   @Setup
+   public void setup() throws IOException
+   {
+      dir = Files.createTempDirectory("wcsa-bench");
+      proxy = SyntheticPages.createProxy(SyntheticPages.create(page), dir);
+      components = SyntheticPages.components(proxy.getImage());
+   }
+
+   @TearDown
+   public void tearDown() throws IOException
+   {
+      proxy.close();
+      SyntheticPages.delete(dir);
+   }
+
+   @Benchmark
+   public Set<ConnectedComponent> process() throws BinarizationException
+   {
+      return new FletcherGraphicsSegmentation(proxy, components).process();
+   }
+}
@@ -0,0 +1,124 @@
+package edu.tamu.tcat.visualpage.wcsa.fletcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages;
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages.PageType;
+
+/**
+ * Measures adding observations to and removing observations from a {@link HoughTransform}
+ * using the candidate text components of a page, as is done by
+ * {@link FletcherGraphicsSegmentation}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HoughTransformBenchmark
+{
+   /**
+    * The angles over which the transform is computed: the ten degrees either side of
+    * horizontal text lines, or the full half circle at one degree resolution.
+    */
+   public static enum AngleRange
+   {
+      HORIZONTAL, ALL
+   }
+
+   @Param({"TEXT", "ILLUSTRATED"})
+   public PageType page;
+
+   @Param({"HORIZONTAL", "ALL"})
+   public AngleRange range;
+
+   private List<ConnectedComponent> candidates;
+   private List<ConnectedComponent> toRemove;
+   private double[] angles;
+   private double radialResolution;
+
+   private HoughTransform<ConnectedComponent> populated;
+
+   @Setup
+   public void setup()
+   {
+      List<ConnectedComponent> components = SyntheticPages.components(SyntheticPages.create(page));
+      candidates = FletcherGraphicsSegmentation.performAreaThresholding(components, 20);
+
+      double avgHeight = candidates.stream().mapToInt(cc -> cc.getBounds().getHeight()).average().orElse(1);
+      radialResolution = 0.2 * avgHeight;
+      angles = generateAngles(range);
+
+      // remove every tenth candidate, approximating one pass of string extraction
+      toRemove = new ArrayList<>();
+      for (int i = 0; i < candidates.size(); i += 10)
+      {
+         toRemove.add(candidates.get(i));
+      }
+   }
+
+   @Setup(Level.Invocation)
+   public void populate()
+   {
+      populated = createTransform();
+      candidates.forEach(populated::addObservation);
+      populated.getAccumulators();
+   }
+
+   @Benchmark
+   public Collection<HoughAccumulator<ConnectedComponent>> addObservations()
+   {
+      HoughTransform<ConnectedComponent> transform = createTransform();
+      candidates.forEach(transform::addObservation);
+
+      // force the cell arrays to be built
+      return transform.getAccumulators();
+   }
+
+   @Benchmark
+   public Collection<HoughAccumulator<ConnectedComponent>> removeObservations()
+   {
+      populated.remove(toRemove);
+      return populated.getAccumulators();
+   }
+
+   private HoughTransform<ConnectedComponent> createTransform()
+   {
+      return new HoughTransform<>(cc -> cc.getCentroid(), angles, radialResolution,
+            SyntheticPages.WIDTH, SyntheticPages.HEIGHT);
+   }
+
+   private static double[] generateAngles(AngleRange range)
+   {
+      double aRes = Math.PI / 180;
+      switch (range)
+      {
+         case HORIZONTAL:
+            double halfPi = Math.PI / 2;
+            return IntStream.range(-5, 5).mapToDouble(i -> halfPi + i * aRes).toArray();
+         case ALL:
+            return IntStream.range(0, 180).mapToDouble(i -> i * aRes).toArray();
+         default:
+            throw new IllegalArgumentException("Unsupported angle range [" + range + "]");
+      }
+   }
+}
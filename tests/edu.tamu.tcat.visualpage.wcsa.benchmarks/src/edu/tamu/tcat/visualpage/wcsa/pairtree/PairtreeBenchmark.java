@@ -0,0 +1,61 @@
+package edu.tamu.tcat.visualpage.wcsa.pairtree;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.tamu.tcat.visualpage.wcsa.benchmarks.SyntheticPages;
+
+/**
+ * Measures the conversion of item identifiers to pairtree paths. Reported times are per
+ * identifier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PairtreeBenchmark
+{
+   private static final int NUM_IDS = 1024;
+
+   private String[] ids;
+
+   @Setup
+   public void setup()
+   {
+      ids = SyntheticPages.identifiers(NUM_IDS, SyntheticPages.SEED);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(NUM_IDS)
+   public void cleanId(Blackhole bh)
+   {
+      for (String id : ids)
+      {
+         bh.consume(Pairtree.cleanId(id));
+      }
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(NUM_IDS)
+   public void mapToPPath(Blackhole bh)
+   {
+      for (String id : ids)
+      {
+         bh.consume(Pairtree.mapToPPath(id));
+      }
+   }
+}
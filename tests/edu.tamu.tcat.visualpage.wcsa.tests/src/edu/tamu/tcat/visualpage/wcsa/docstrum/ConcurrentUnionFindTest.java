@@ -0,0 +1,171 @@
+package edu.tamu.tcat.visualpage.wcsa.docstrum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentUnionFindTest
+{
+   private static final int SIZE = 30_000;
+   private static final int UNIONS = 150_000;
+   private static final int RUNS = 20;
+   private static final int THREADS = 8;
+
+   private ExecutorService threads;
+
+   @Before
+   public void setUp()
+   {
+      threads = Executors.newFixedThreadPool(THREADS);
+   }
+
+   @After
+   public void tearDown()
+   {
+      threads.shutdownNow();
+   }
+
+   /**
+    * Applies the same random unions to a {@link DenseUnionFind} and, from several threads
+    * at once and in a different order each time, to a {@link ConcurrentUnionFind}. The
+    * labels of every run must match those of the dense forest.
+    */
+   @Test
+   public void testRandomUnionsMatchDenseUnionFind() throws Exception
+   {
+      Random rng = new Random(23);
+      int[] a = new int[UNIONS];
+      int[] b = new int[UNIONS];
+      for (int i = 0; i < UNIONS; i++)
+      {
+         a[i] = rng.nextInt(SIZE);
+         b[i] = rng.nextInt(SIZE);
+      }
+
+      checkRuns(a, b, rng);
+   }
+
+   /**
+    * Joins every element to the last element in decreasing order. Each union links the
+    * current root of the single large set beneath a smaller element, so the threads
+    * continually race to relink the same root.
+    */
+   @Test
+   public void testContendedUnionsMatchDenseUnionFind() throws Exception
+   {
+      int[] a = new int[SIZE - 1];
+      int[] b = new int[SIZE - 1];
+      for (int i = 0; i < SIZE - 1; i++)
+      {
+         a[i] = SIZE - 2 - i;
+         b[i] = SIZE - 1;
+      }
+
+      checkRuns(a, b, null);
+   }
+
+   /**
+    * @param rng Used to shuffle the unions before each run, or {@code null} to apply them
+    *       in the order given.
+    */
+   private void checkRuns(int[] a, int[] b, Random rng) throws Exception
+   {
+      DenseUnionFind dense = new DenseUnionFind(SIZE);
+      for (int i = 0; i < a.length; i++)
+      {
+         dense.union(a[i], b[i]);
+      }
+
+      int[] expected = new int[SIZE];
+      int expectedCount = dense.label(expected);
+
+      for (int run = 0; run < RUNS; run++)
+      {
+         int[] order = (rng == null) ? identity(a.length) : shuffle(a.length, rng);
+         ConcurrentUnionFind uf = new ConcurrentUnionFind(SIZE);
+         int joined = applyConcurrently(uf, a, b, order);
+
+         int[] labels = new int[SIZE];
+         int count = uf.label(labels);
+         assertEquals("Run [" + run + "]", expectedCount, count);
+         assertArrayEquals("Run [" + run + "]", expected, labels);
+
+         // every union that reports joining two sets removes exactly one set
+         assertEquals("Run [" + run + "]", SIZE - expectedCount, joined);
+      }
+   }
+
+   /**
+    * Applies the unions in the supplied order, divided between threads that start
+    * together.
+    *
+    * @return The number of unions that reported joining two sets.
+    */
+   private int applyConcurrently(ConcurrentUnionFind uf, int[] a, int[] b, int[] order) throws Exception
+   {
+      CyclicBarrier start = new CyclicBarrier(THREADS);
+      List<Future<Integer>> tasks = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++)
+      {
+         int stripe = t;
+         Callable<Integer> task = () -> {
+            start.await();
+            int joined = 0;
+            for (int i = stripe; i < order.length; i += THREADS)
+            {
+               if (uf.union(a[order[i]], b[order[i]]))
+                  joined++;
+            }
+
+            return Integer.valueOf(joined);
+         };
+         tasks.add(threads.submit(task));
+      }
+
+      int joined = 0;
+      for (Future<Integer> task : tasks)
+      {
+         joined += task.get(60, TimeUnit.SECONDS).intValue();
+      }
+
+      return joined;
+   }
+
+   private static int[] identity(int n)
+   {
+      int[] order = new int[n];
+      for (int i = 0; i < n; i++)
+      {
+         order[i] = i;
+      }
+
+      return order;
+   }
+
+   private static int[] shuffle(int n, Random rng)
+   {
+      int[] order = identity(n);
+      for (int i = n - 1; i > 0; i--)
+      {
+         int j = rng.nextInt(i + 1);
+         int tmp = order[i];
+         order[i] = order[j];
+         order[j] = tmp;
+      }
+
+      return order;
+   }
+}
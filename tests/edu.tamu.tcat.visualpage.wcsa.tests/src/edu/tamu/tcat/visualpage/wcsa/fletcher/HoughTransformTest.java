@@ -0,0 +1,224 @@
+package edu.tamu.tcat.visualpage.wcsa.fletcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.analytics.image.region.SimplePoint;
+
+public class HoughTransformTest
+{
+   private static final int WIDTH = 400;
+   private static final int HEIGHT = 300;
+   private static final int NUM_ANGLES = 90;
+   private static final double RADIAL_RESOLUTION = 2;
+
+   // large enough that bulk updates cross the parallel threshold of the transform
+   private static final int NUM_POINTS = 3000;
+   private static final int MAX_BATCH = 1500;
+   private static final int STEPS = 60;
+
+   @Test
+   public void testBulkUpdatesMatchIncrementalUpdatesWithFixedBounds()
+   {
+      for (long seed = 1; seed <= 3; seed++)
+      {
+         runRandomUpdates(seed, true);
+      }
+   }
+
+   @Test
+   public void testBulkUpdatesMatchIncrementalUpdatesWithComputedBounds()
+   {
+      for (long seed = 1; seed <= 3; seed++)
+      {
+         runRandomUpdates(seed, false);
+      }
+   }
+
+   /**
+    * Applies the same random sequence of additions and removals to two transforms, one
+    * using {@link HoughTransform#addAll} and {@link HoughTransform#removeAll} and the other
+    * adding and removing one observation at a time, and checks after most steps that the
+    * two agree with each other and with cells counted directly from the live observations.
+    * Removals include observations that were never added or were already removed, and
+    * additions include observations that were previously removed.
+    */
+   private void runRandomUpdates(long seed, boolean fixedBounds)
+   {
+      Random rng = new Random(seed);
+      Point[] points = new Point[NUM_POINTS];
+      for (int i = 0; i < NUM_POINTS; i++)
+      {
+         points[i] = new SimplePoint(rng.nextInt(WIDTH + 1), rng.nextInt(HEIGHT + 1));
+      }
+
+      double[] angles = new double[NUM_ANGLES];
+      for (int i = 0; i < NUM_ANGLES; i++)
+      {
+         angles[i] = i * Math.PI / NUM_ANGLES;
+      }
+
+      HoughTransform<Integer> bulk = create(points, angles, fixedBounds);
+      HoughTransform<Integer> incremental = create(points, angles, fixedBounds);
+      Set<Integer> live = new HashSet<>();
+
+      for (int step = 0; step < STEPS; step++)
+      {
+         List<Integer> batch = new ArrayList<>();
+         int batchSize = 1 + rng.nextInt(MAX_BATCH);
+         for (int i = 0; i < batchSize; i++)
+         {
+            batch.add(Integer.valueOf(rng.nextInt(NUM_POINTS)));
+         }
+
+         // removals are weighted towards observations that are present
+         if (rng.nextBoolean() && !live.isEmpty())
+         {
+            List<Integer> present = new ArrayList<>(live);
+            Collections.shuffle(present, rng);
+            batch.addAll(present.subList(0, Math.min(present.size(), batchSize)));
+
+            bulk.removeAll(batch);
+            batch.forEach(incremental::remove);
+            live.removeAll(batch);
+         }
+         else
+         {
+            bulk.addAll(batch);
+            batch.forEach(incremental::addObservation);
+            live.addAll(batch);
+         }
+
+         // skipping some checks leaves the transforms unpacked, so that later removals are
+         // applied before the cells are rebuilt
+         if (rng.nextInt(4) == 0)
+            continue;
+
+         String msg = "seed [" + seed + "] step [" + step + "]";
+         for (int threshold : new int[] { 0, 1, 3, 8 })
+         {
+            List<String> expected = describe(incremental.getAccumulatorsAbove(threshold));
+            assertEquals(msg + " threshold [" + threshold + "]", expected, describe(bulk.getAccumulatorsAbove(threshold)));
+         }
+
+         assertEquals(msg, count(points, angles, live), toMap(bulk.getAccumulatorsAbove(0)));
+         assertEquals(msg, describeColumns(incremental), describeColumns(bulk));
+      }
+   }
+
+   private static HoughTransform<Integer> create(Point[] points, double[] angles, boolean fixedBounds)
+   {
+      return fixedBounds
+            ? new HoughTransform<>(ix -> points[ix.intValue()], angles, RADIAL_RESOLUTION, WIDTH, HEIGHT)
+            : new HoughTransform<>(ix -> points[ix.intValue()], angles, RADIAL_RESOLUTION);
+   }
+
+   /**
+    * Describes each cell by its angle, rho, size and observations. Cells must be ordered by
+    * decreasing size, but the order of cells of equal size is unspecified, so the
+    * descriptions are returned sorted.
+    */
+   private static List<String> describe(List<HoughAccumulator<Integer>> cells)
+   {
+      List<String> result = new ArrayList<>();
+      int previous = Integer.MAX_VALUE;
+      for (HoughAccumulator<Integer> cell : cells)
+      {
+         assertTrue("Cells are not in decreasing order of size.", cell.size() <= previous);
+         assertEquals(cell.size(), cell.getObservations().size());
+         previous = cell.size();
+
+         result.add(cell.getAngleIndex() + ":" + cell.getRhoIndex() + ":" + cell.size() + ":" + new TreeSet<>(cell.getObservations()));
+      }
+
+      Collections.sort(result);
+      return result;
+   }
+
+   /**
+    * Describes the column of every angle that has cells, including the cells of each
+    * column, the position reported for each cell and the result of a range query.
+    */
+   private static List<String> describeColumns(HoughTransform<Integer> transform)
+   {
+      Map<Integer, HoughTransform.AngleColumn<Integer>> columns = new TreeMap<>();
+      for (HoughAccumulator<Integer> cell : transform.getAccumulators())
+      {
+         columns.put(Integer.valueOf(cell.getAngleIndex()), transform.getByAngle(cell));
+      }
+
+      List<String> result = new ArrayList<>();
+      for (Map.Entry<Integer, HoughTransform.AngleColumn<Integer>> entry : columns.entrySet())
+      {
+         HoughTransform.AngleColumn<Integer> column = entry.getValue();
+         StringBuilder sb = new StringBuilder();
+         sb.append(entry.getKey()).append(" [").append(column.size()).append("]");
+         for (int i = 0; i < column.size(); i++)
+         {
+            HoughAccumulator<Integer> cell = column.get(i);
+            assertEquals(entry.getKey().intValue(), cell.getAngleIndex());
+            assertEquals(i, column.indexOf(cell));
+            sb.append(" ").append(cell.getRhoIndex()).append(":").append(cell.size());
+         }
+
+         if (column.size() > 0)
+         {
+            int min = column.get(column.size() / 4).getRhoIndex();
+            int max = column.get(column.size() * 3 / 4).getRhoIndex();
+            sb.append(" range");
+            for (HoughAccumulator<Integer> cell : column.getRange(min, max))
+            {
+               sb.append(" ").append(cell.getRhoIndex());
+            }
+         }
+
+         result.add(sb.toString());
+      }
+
+      return result;
+   }
+
+   private static Map<String, Integer> toMap(List<HoughAccumulator<Integer>> cells)
+   {
+      Map<String, Integer> result = new TreeMap<>();
+      for (HoughAccumulator<Integer> cell : cells)
+      {
+         result.put(cell.getAngleIndex() + ":" + cell.getRhoIndex(), Integer.valueOf(cell.size()));
+      }
+
+      return result;
+   }
+
+   /**
+    * Counts the live observations that fall in each cell directly from their points.
+    */
+   private static Map<String, Integer> count(Point[] points, double[] angles, Set<Integer> live)
+   {
+      Map<String, Integer> result = new TreeMap<>();
+      for (Integer ix : live)
+      {
+         Point p = points[ix.intValue()];
+         for (int i = 0; i < angles.length; i++)
+         {
+            double rho = p.getX() * Math.cos(angles[i]) + p.getY() * Math.sin(angles[i]);
+            int rhoIx = (int)Math.floor(rho / RADIAL_RESOLUTION);
+            result.merge(i + ":" + rhoIx, Integer.valueOf(1), (a, b) -> Integer.valueOf(a.intValue() + b.intValue()));
+         }
+      }
+
+      return result;
+   }
+}
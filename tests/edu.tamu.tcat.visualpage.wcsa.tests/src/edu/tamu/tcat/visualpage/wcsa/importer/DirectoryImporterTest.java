@@ -0,0 +1,90 @@
+package edu.tamu.tcat.visualpage.wcsa.importer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryImporterTest
+{
+   private Path root;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      root = Files.createTempDirectory("wcsa-importer");
+
+      BufferedImage page = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY);
+      for (String name : new String[] { "a/p1.png", "a/p2.png", "a/b/p3.png", "c/p4.png" })
+      {
+         Path file = root.resolve(name);
+         Files.createDirectories(file.getParent());
+         ImageIO.write(page, "png", file.toFile());
+      }
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      try (Stream<Path> files = Files.walk(root))
+      {
+         files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+   }
+
+   @Test
+   public void testRepeatedDirectoryIsWalkedOnce() throws IOException
+   {
+      DirectoryImporter importer = create("a", "c", "a");
+      assertEquals(Arrays.asList("a/b/p3.png", "a/p1.png", "a/p2.png", "c/p4.png"), getPageIds(importer));
+   }
+
+   @Test
+   public void testOverlappingDirectoriesAreWalkedOnce() throws IOException
+   {
+      assertEquals(Arrays.asList("a/b/p3.png", "a/p1.png", "a/p2.png"), getPageIds(create("a", "a/b")));
+      assertEquals(Arrays.asList("a/b/p3.png", "a/p1.png", "a/p2.png"), getPageIds(create("a/b", "a")));
+      assertEquals(Arrays.asList("a/p1.png", "a/b/p3.png", "a/p2.png"), getPageIds(create("a/p1.png", "a")));
+   }
+
+   /**
+    * A link from a directory back to its parent must not be followed.
+    */
+   @Test(timeout = 30_000)
+   public void testSymbolicLinkCycleIsNotFollowed() throws IOException
+   {
+      Files.createSymbolicLink(root.resolve("a/b/loop"), root.resolve("a"));
+
+      DirectoryImporter importer = create("a");
+      assertEquals(Arrays.asList("a/b/p3.png", "a/p1.png", "a/p2.png"), getPageIds(importer));
+   }
+
+   private DirectoryImporter create(String... dirs) throws IOException
+   {
+      DirectoryImporter importer = new DirectoryImporter(root, root.resolve("output"));
+      for (String dir : dirs)
+      {
+         importer.addDirectory(root.resolve(dir));
+      }
+
+      return importer;
+   }
+
+   private static List<String> getPageIds(DirectoryImporter importer)
+   {
+      return importer.stream().map(importer::getPageId).collect(Collectors.toList());
+   }
+}
@@ -0,0 +1,106 @@
+package edu.tamu.tcat.visualpage.wcsa.importer;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageProxyTest
+{
+   private static final Error FAILURE = new OutOfMemoryError("Simulated decoder failure");
+
+   private Path dir;
+   private DirectoryImporter importer;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      dir = Files.createTempDirectory("wcsa-proxy");
+      importer = new DirectoryImporter(dir, dir);
+      importer.setImageLoader(file -> {
+         throw FAILURE;
+      });
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      Files.delete(dir);
+   }
+
+   /**
+    * An error thrown while decoding on the calling thread must propagate, and later
+    * callers must fail rather than wait for the image forever.
+    */
+   @Test(timeout = 30_000)
+   public void testErrorDuringDecodeFailsImage()
+   {
+      ImageProxy proxy = new ImageProxy(importer, dir.resolve("page.png"));
+      try
+      {
+         proxy.getImage();
+         fail("Image was decoded.");
+      }
+      catch (Error ex)
+      {
+         assertSame(FAILURE, ex);
+      }
+
+      assertImageFails(proxy);
+   }
+
+   /**
+    * An error thrown while prefetching must fail the prefetched future and any caller
+    * waiting on the image.
+    */
+   @Test(timeout = 30_000)
+   public void testErrorDuringPrefetchFailsImage() throws Exception
+   {
+      ExecutorService decoder = Executors.newSingleThreadExecutor();
+      try
+      {
+         ImageProxy proxy = new ImageProxy(importer, dir.resolve("page.png"));
+         CompletableFuture<?> future = proxy.prefetch(decoder);
+         try
+         {
+            future.get(30, TimeUnit.SECONDS);
+            fail("Image was decoded.");
+         }
+         catch (ExecutionException ex)
+         {
+            assertSame(FAILURE, ex.getCause());
+         }
+
+         assertImageFails(proxy);
+      }
+      finally
+      {
+         decoder.shutdownNow();
+      }
+   }
+
+   private static void assertImageFails(ImageProxy proxy)
+   {
+      try
+      {
+         proxy.getImage();
+         fail("Image was decoded.");
+      }
+      catch (IllegalStateException ex)
+      {
+         assertTrue(ex.getCause() == FAILURE);
+      }
+   }
+}
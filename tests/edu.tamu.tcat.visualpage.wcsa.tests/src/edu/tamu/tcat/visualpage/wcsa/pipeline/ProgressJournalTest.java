@@ -0,0 +1,84 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProgressJournalTest
+{
+   private Path dir;
+   private Path file;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      dir = Files.createTempDirectory("wcsa-journal");
+      file = dir.resolve("completed.txt");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      try (Stream<Path> files = Files.walk(dir))
+      {
+         files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+   }
+
+   /**
+    * Two journals open on the same file, as in two processes sharing an unsharded run, must
+    * not overwrite each other's pages.
+    */
+   @Test
+   public void testSharedJournalKeepsPagesOfBothWriters() throws IOException
+   {
+      try (ProgressJournal first = new ProgressJournal(file, 1);
+           ProgressJournal second = new ProgressJournal(file, 1))
+      {
+         first.markCompleted("a/p1.png");
+         second.markCompleted("b/p1.png");
+         first.markCompleted("a/p2.png");
+         second.markCompleted("b/p2.png");
+      }
+
+      assertEquals(Arrays.asList("a/p1.png", "b/p1.png", "a/p2.png", "b/p2.png"), Files.readAllLines(file));
+      try (ProgressJournal journal = new ProgressJournal(file, 1))
+      {
+         assertEquals(4, journal.getCompletedCount());
+      }
+   }
+
+   /**
+    * A partially written line is not read as a completed page, and is not joined to the
+    * next page recorded.
+    */
+   @Test
+   public void testPartialLineIsTerminated() throws IOException
+   {
+      Files.write(file, "a/p1.png\na/p2".getBytes(StandardCharsets.UTF_8));
+      try (ProgressJournal journal = new ProgressJournal(file, 1))
+      {
+         assertTrue(journal.isCompleted("a/p1.png"));
+         assertFalse(journal.isCompleted("a/p2"));
+         journal.markCompleted("a/p2.png");
+      }
+
+      assertEquals(Arrays.asList("a/p1.png", "a/p2", "a/p2.png"), Files.readAllLines(file));
+      try (ProgressJournal journal = new ProgressJournal(file, 1))
+      {
+         assertTrue(journal.isCompleted("a/p2.png"));
+      }
+   }
+}
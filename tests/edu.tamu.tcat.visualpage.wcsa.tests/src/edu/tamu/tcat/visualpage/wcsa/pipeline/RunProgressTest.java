@@ -0,0 +1,192 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.visualpage.wcsa.importer.AsyncImageWriter;
+import edu.tamu.tcat.visualpage.wcsa.importer.DirectoryImporter;
+import edu.tamu.tcat.visualpage.wcsa.importer.ImageProxy;
+
+public class RunProgressTest
+{
+   private static final int ITEMS = 2;
+   private static final int PAGES_PER_ITEM = 10;
+
+   // pages whose output is written before the run is killed
+   private static final int WRITTEN = 7;
+
+   private Path root;
+   private Path input;
+   private Path output;
+   private Path journalFile;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      root = Files.createTempDirectory("wcsa-progress");
+      input = root.resolve("input");
+      output = root.resolve("output");
+      journalFile = root.resolve("journal").resolve("completed.txt");
+
+      BufferedImage page = new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_GRAY);
+      for (int i = 0; i < ITEMS; i++)
+      {
+         Path item = Files.createDirectories(input.resolve("item" + i));
+         for (int j = 0; j < PAGES_PER_ITEM; j++)
+         {
+            ImageIO.write(page, "png", item.resolve(String.format("page%02d.png", j)).toFile());
+         }
+      }
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      try (Stream<Path> files = Files.walk(root))
+      {
+         files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+   }
+
+   /**
+    * Kills a run part way through a journal batch, while the outputs of some processed pages
+    * are still queued, and checks that resuming the run reprocesses exactly the pages that
+    * have no output.
+    */
+   @Test
+   public void testResumeReprocessesPagesWithoutOutput() throws Exception
+   {
+      ProgressJournal journal = new ProgressJournal(journalFile, 4);
+      AsyncImageWriter writer = new AsyncImageWriter(2, 4);
+      try
+      {
+         DirectoryImporter importer = createImporter();
+         RunProgress progress = new RunProgress(importer, input, journal, null);
+
+         // the first pages are written, one fails to encode, and the outputs of the rest stay
+         // queued forever, as they would be if the process died before writing them
+         List<ImageProxy> submitted = new ArrayList<>();
+         CountDownLatch finished = new CountDownLatch(WRITTEN + 1);
+         PagePipeline.PageProcessor<Void> processor = new PagePipeline.PageProcessor<Void>()
+         {
+            @Override
+            public Void analyze(ImageProxy proxy, BufferedImage image)
+            {
+               return null;
+            }
+
+            @Override
+            public CompletableFuture<Void> write(ImageProxy proxy, BufferedImage image, Void result) throws Exception
+            {
+               int ix;
+               synchronized (submitted)
+               {
+                  ix = submitted.indexOf(proxy);
+               }
+
+               if (ix < WRITTEN)
+                  return writer.write(getOutputFile(importer, proxy), "png", image);
+               if (ix == WRITTEN)
+                  return writer.write(getOutputFile(importer, proxy), "no-such-format", image);
+
+               return new CompletableFuture<>();
+            }
+         };
+
+         PagePipeline<Void> pipeline = new PagePipeline<>(processor, 4, ITEMS * PAGES_PER_ITEM);
+         pipeline.setPageListener(new PagePipeline.PageListener()
+         {
+            @Override
+            public void completed(ImageProxy proxy)
+            {
+               progress.completed(proxy);
+               finished.countDown();
+            }
+
+            @Override
+            public void failed(ImageProxy proxy, Throwable cause)
+            {
+               progress.failed(proxy, cause);
+               finished.countDown();
+            }
+         });
+
+         Iterator<ImageProxy> pages = progress.pages();
+         while (pages.hasNext())
+         {
+            ImageProxy proxy = pages.next();
+            synchronized (submitted)
+            {
+               submitted.add(proxy);
+            }
+            pipeline.submit(proxy);
+         }
+
+         assertTrue("Pages were not written in time.", finished.await(30, TimeUnit.SECONDS));
+
+         // the journal is left open and unsynced, as it would be after the process is killed
+         assertEquals(WRITTEN, journal.getCompletedCount());
+
+         Set<String> withoutOutput = new TreeSet<>();
+         DirectoryImporter check = createImporter();
+         check.stream().filter(p -> !Files.exists(getOutputFile(check, p))).forEach(p -> withoutOutput.add(check.getPageId(p)));
+         assertEquals(ITEMS * PAGES_PER_ITEM - WRITTEN, withoutOutput.size());
+
+         try (ProgressJournal resumed = new ProgressJournal(journalFile, 4))
+         {
+            DirectoryImporter importer2 = createImporter();
+            RunProgress progress2 = new RunProgress(importer2, input, resumed, null);
+            Set<String> pending = new TreeSet<>();
+            progress2.pages().forEachRemaining(p -> pending.add(importer2.getPageId(p)));
+            progress2.endOfInput();
+
+            assertEquals(withoutOutput, pending);
+            assertFalse(pending.isEmpty());
+         }
+      }
+      finally
+      {
+         writer.close();
+         journal.close();
+      }
+   }
+
+   private DirectoryImporter createImporter() throws IOException
+   {
+      DirectoryImporter importer = new DirectoryImporter(input, output);
+      for (int i = 0; i < ITEMS; i++)
+      {
+         importer.addDirectory(input.resolve("item" + i));
+      }
+
+      return importer;
+   }
+
+   private static Path getOutputFile(DirectoryImporter importer, ImageProxy proxy)
+   {
+      Path dir = importer.getOutputPath(proxy);
+      return dir.getParent().resolve(dir.getFileName().toString() + "png");
+   }
+}
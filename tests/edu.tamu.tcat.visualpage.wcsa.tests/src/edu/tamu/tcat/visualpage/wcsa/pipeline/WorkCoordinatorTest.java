@@ -0,0 +1,221 @@
+package edu.tamu.tcat.visualpage.wcsa.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkCoordinatorTest
+{
+   // long enough that leases are never renewed by the renewal threads during a test
+   private static final long LEASE_SECONDS = 3600;
+
+   private Path shared;
+   private final List<WorkCoordinator> coordinators = new ArrayList<>();
+
+   @Before
+   public void setUp() throws IOException
+   {
+      shared = Files.createTempDirectory("wcsa-coordinator");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      coordinators.forEach(WorkCoordinator::close);
+      try (Stream<Path> files = Files.walk(shared))
+      {
+         files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+   }
+
+   @Test
+   public void testClaimIsExclusive() throws IOException
+   {
+      WorkCoordinator a = open();
+      WorkCoordinator b = open();
+
+      assertTrue(a.claim("item"));
+      assertFalse(a.claim("item"));
+      assertFalse(b.claim("item"));
+
+      a.complete("item");
+      assertFalse(a.claim("item"));
+      assertFalse(b.claim("item"));
+   }
+
+   @Test
+   public void testReleasedItemMayBeClaimed() throws IOException
+   {
+      WorkCoordinator a = open();
+      WorkCoordinator b = open();
+
+      assertTrue(a.claim("item"));
+      a.release("item");
+      assertTrue(b.claim("item"));
+   }
+
+   /**
+    * Several coordinators race to take over the same expired lease. Exactly one of them
+    * must succeed for each item.
+    */
+   @Test
+   public void testTakeoverOfExpiredLeaseIsExclusive() throws Exception
+   {
+      int numCoordinators = 8;
+      for (int i = 0; i < numCoordinators; i++)
+      {
+         open();
+      }
+
+      ExecutorService threads = Executors.newFixedThreadPool(numCoordinators);
+      try
+      {
+         for (int round = 0; round < 200; round++)
+         {
+            String item = "item-" + round;
+            WorkCoordinator crashed = open();
+            assertTrue(crashed.claim(item));
+            expire(item);
+
+            CyclicBarrier start = new CyclicBarrier(numCoordinators);
+            List<Future<Boolean>> claims = new ArrayList<>();
+            for (int i = 0; i < numCoordinators; i++)
+            {
+               WorkCoordinator coordinator = coordinators.get(i);
+               Callable<Boolean> claim = () -> {
+                  start.await();
+                  return Boolean.valueOf(coordinator.claim(item));
+               };
+               claims.add(threads.submit(claim));
+            }
+
+            int winners = 0;
+            for (Future<Boolean> claim : claims)
+            {
+               if (claim.get(30, TimeUnit.SECONDS).booleanValue())
+                  winners++;
+            }
+
+            assertEquals("Coordinators holding [" + item + "]", 1, winners);
+         }
+      }
+      finally
+      {
+         threads.shutdownNow();
+      }
+
+      // takeover tokens and temporary leases must not be left behind
+      try (DirectoryStream<Path> leases = Files.newDirectoryStream(shared.resolve("leases"), "*.{takeover*,tmp}"))
+      {
+         assertFalse(leases.iterator().hasNext());
+      }
+   }
+
+   /**
+    * A former owner that stalled while its lease was taken over must not renew the new
+    * owner's lease.
+    */
+   @Test
+   public void testStalledOwnerDoesNotRenewNewLease() throws IOException
+   {
+      WorkCoordinator stalled = open();
+      WorkCoordinator taker = open();
+
+      assertTrue(stalled.claim("item"));
+      expire("item");
+      assertTrue(taker.claim("item"));
+
+      Path lease = getLease();
+      FileTime renewed = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+      Files.setLastModifiedTime(lease, renewed);
+
+      stalled.renewAll();
+      assertEquals(renewed, Files.getLastModifiedTime(lease));
+
+      taker.renewAll();
+      assertTrue(Files.getLastModifiedTime(lease).compareTo(renewed) > 0);
+   }
+
+   /**
+    * A former owner that stalled while its lease was taken over must not delete the new
+    * owner's lease.
+    */
+   @Test
+   public void testStalledOwnerDoesNotReleaseNewLease() throws IOException
+   {
+      WorkCoordinator stalled = open();
+      WorkCoordinator taker = open();
+
+      assertTrue(stalled.claim("item"));
+      expire("item");
+      assertTrue(taker.claim("item"));
+
+      Path lease = getLease();
+      stalled.release("item");
+      assertTrue(Files.exists(lease));
+      assertEquals(taker.getOwner(), Files.readAllLines(lease, StandardCharsets.UTF_8).get(1));
+
+      taker.complete("item");
+      assertFalse(Files.exists(lease));
+      assertFalse(stalled.claim("item"));
+   }
+
+   private WorkCoordinator open() throws IOException
+   {
+      WorkCoordinator coordinator = new WorkCoordinator(shared, LEASE_SECONDS);
+      coordinators.add(coordinator);
+      return coordinator;
+   }
+
+   /**
+    * Ages the lease of an item past the lease duration, as if its owner had stopped
+    * renewing it.
+    */
+   private void expire(String item) throws IOException
+   {
+      for (Path lease : getLeases())
+      {
+         if (Files.readAllLines(lease, StandardCharsets.UTF_8).get(0).equals(item))
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(2 * LEASE_SECONDS)));
+      }
+   }
+
+   private Path getLease() throws IOException
+   {
+      List<Path> leases = getLeases();
+      assertEquals(1, leases.size());
+      return leases.get(0);
+   }
+
+   private List<Path> getLeases() throws IOException
+   {
+      List<Path> leases = new ArrayList<>();
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(shared.resolve("leases")))
+      {
+         files.forEach(leases::add);
+      }
+
+      return leases;
+   }
+}
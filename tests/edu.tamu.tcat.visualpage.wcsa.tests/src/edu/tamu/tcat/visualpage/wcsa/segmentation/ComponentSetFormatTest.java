@@ -0,0 +1,468 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import edu.tamu.tcat.analytics.image.region.BoundingBox;
+import edu.tamu.tcat.analytics.image.region.Point;
+import edu.tamu.tcat.analytics.image.region.SimpleBoundingBox;
+import edu.tamu.tcat.analytics.image.region.SimplePoint;
+import edu.tamu.tcat.dia.segmentation.cc.ConnectedComponent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ComponentSetFormatTest
+{
+   // magic number and version
+   private static final int HEADER_BYTES = 5;
+
+   private Path dir;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      dir = Files.createTempDirectory("wcsa-components");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      try (Stream<Path> files = Files.walk(dir))
+      {
+         files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+   }
+
+   @Test
+   public void testRoundTripThroughFile() throws IOException
+   {
+      List<RunLengthComponent> components = createShapes();
+      Path file = dir.resolve("page.ccs");
+      ComponentSetFormat.write(file, components);
+
+      assertComponentsEqual(components, ComponentSetFormat.read(file));
+   }
+
+   /**
+    * Writes enough components that the encoded set is several times larger than the
+    * buffers of the format, and reads it back through a channel that returns a single byte
+    * at a time, so that values are split across buffer refills.
+    */
+   @Test
+   public void testRoundTripOfLargeSet() throws IOException
+   {
+      Random rng = new Random(7);
+      List<RunLengthComponent> components = new ArrayList<>();
+      for (int i = 0; i < 20_000; i++)
+      {
+         components.add(createRandom(i, rng));
+      }
+
+      byte[] data = encode(components);
+      assertTrue(data.length > 4 * 64 * 1024);
+      assertComponentsEqual(components, ComponentSetFormat.read(new TrickleChannel(data)));
+      assertComponentsEqual(components, decode(data));
+   }
+
+   @Test
+   public void testRoundTripOfEmptySet() throws IOException
+   {
+      List<RunLengthComponent> components = Collections.emptyList();
+      byte[] data = encode(components);
+
+      assertEquals(HEADER_BYTES + 1, data.length);
+      assertComponentsEqual(components, decode(data));
+   }
+
+   @Test
+   public void testWritesConnectedComponents() throws IOException
+   {
+      List<RunLengthComponent> components = createShapes();
+      Set<ConnectedComponent> ccSet = new LinkedHashSet<>(components);
+      Path file = dir.resolve("page.ccs");
+      ComponentSetFormat.write(file, ccSet);
+
+      assertComponentsEqual(components, ComponentSetFormat.read(file));
+   }
+
+   /**
+    * Components that do not store their pixels as runs are rejected before anything is
+    * written.
+    */
+   @Test
+   public void testRejectsComponentsWithoutRuns() throws IOException
+   {
+      List<ConnectedComponent> ccSet = new ArrayList<>(createShapes());
+      ccSet.add(new ConnectedComponent()
+      {
+         @Override
+         public BoundingBox getBounds()
+         {
+            return new SimpleBoundingBox(0, 0, 1, 1);
+         }
+
+         @Override
+         public Point getCentroid()
+         {
+            return new SimplePoint(0, 0);
+         }
+
+         @Override
+         public int getSequence()
+         {
+            return 99;
+         }
+      });
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try
+      {
+         ComponentSetFormat.write(Channels.newChannel(out), ccSet);
+         fail("Wrote a component without runs.");
+      }
+      catch (IllegalArgumentException ex)
+      {
+         assertEquals(0, out.size());
+      }
+   }
+
+   /**
+    * Checks the encoding of values on either side of the one, two and three byte limits of
+    * the variable length integers, using the sequence number, which directly follows the
+    * header and the component count.
+    */
+   @Test
+   public void testVarIntBoundaries() throws IOException
+   {
+      assertSequenceEncoding(0, 0x00);
+      assertSequenceEncoding(127, 0x7f);
+      assertSequenceEncoding(128, 0x80, 0x01);
+      assertSequenceEncoding(16383, 0xff, 0x7f);
+      assertSequenceEncoding(16384, 0x80, 0x80, 0x01);
+      assertSequenceEncoding(2097151, 0xff, 0xff, 0x7f);
+      assertSequenceEncoding(2097152, 0x80, 0x80, 0x80, 0x01);
+      assertSequenceEncoding(Integer.MAX_VALUE, 0xff, 0xff, 0xff, 0xff, 0x07);
+   }
+
+   /**
+    * Round trips components whose coordinates, gaps and run lengths lie on the boundaries
+    * of the variable length integers.
+    */
+   @Test
+   public void testVarIntBoundariesInComponents() throws IOException
+   {
+      int[] values = { 127, 128, 16383, 16384 };
+      List<RunLengthComponent> components = new ArrayList<>();
+      for (int v : values)
+      {
+         // bounds at the value, a gap of the value and a run of the value minus one
+         components.add(new RunLengthComponent(v, new int[] { v, v, v, v, v + 1 + v, v + 1 + v + v - 1 }));
+         // a second row whose first run ends at the value
+         components.add(new RunLengthComponent(v + 1, new int[] { 0, 0, v, 1, v, v, 1, v + 1 + v, v + 1 + v }));
+      }
+
+      assertComponentsEqual(components, decode(encode(components)));
+   }
+
+   @Test
+   public void testRejectsTruncatedInput() throws IOException
+   {
+      byte[] data = encode(createShapes());
+      for (int len = 0; len < data.length; len++)
+      {
+         try
+         {
+            decode(Arrays.copyOf(data, len));
+            fail("Truncated component set of [" + len + "] bytes was read.");
+         }
+         catch (EOFException ex)
+         {
+            // expected
+         }
+      }
+   }
+
+   @Test
+   public void testRejectsInvalidHeader() throws IOException
+   {
+      byte[] data = encode(createShapes());
+
+      byte[] magic = data.clone();
+      magic[0] ^= 0x01;
+      assertRejected(magic);
+
+      byte[] version = data.clone();
+      version[4] = 2;
+      assertRejected(version);
+   }
+
+   @Test
+   public void testRejectsInvalidVarInt() throws IOException
+   {
+      // a component count with too many continuation bytes
+      assertRejected(header(0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+
+      // a component count that overflows an int
+      assertRejected(header(0xff, 0xff, 0xff, 0xff, 0x0f));
+   }
+
+   @Test
+   public void testRejectsComponentWithoutPixels() throws IOException
+   {
+      // one component: sequence 0 at (0, 0), one column wide and two rows high, centroid
+      // (0, 0) and no runs in either row
+      assertRejected(header(0x01, 0x00, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00));
+   }
+
+   @Test
+   public void testRejectsPixelsThatDoNotMatchBounds() throws IOException
+   {
+      RunLengthComponent cc = new RunLengthComponent(3, new int[] { 2, 4, 9, 3, 4, 5 });
+      byte[] data = encode(Collections.singletonList(cc));
+
+      // sequence, left, top, width, height, cx, cy follow the header and the count
+      int widthIx = HEADER_BYTES + 1 + 3;
+      int cxIx = widthIx + 2;
+      for (int ix : new int[] { widthIx, widthIx + 1, cxIx, cxIx + 1 })
+      {
+         byte[] corrupt = data.clone();
+         corrupt[ix]++;
+         assertRejected(corrupt);
+      }
+   }
+
+   /**
+    * Changes each byte of an encoded set in turn. A changed set may still be valid, but if
+    * it is not it must be rejected with an {@link IOException} rather than failing in some
+    * other way.
+    */
+   @Test
+   public void testCorruptInputFailsCleanly() throws IOException
+   {
+      byte[] data = encode(createShapes());
+      Random rng = new Random(11);
+      for (int ix = 0; ix < data.length; ix++)
+      {
+         for (int trial = 0; trial < 8; trial++)
+         {
+            byte[] corrupt = data.clone();
+            corrupt[ix] = (byte)(corrupt[ix] ^ (1 + rng.nextInt(255)));
+            try
+            {
+               decode(corrupt);
+            }
+            catch (IOException ex)
+            {
+               // expected
+            }
+            catch (RuntimeException ex)
+            {
+               throw new AssertionError("Corrupting byte [" + ix + "] caused " + ex, ex);
+            }
+         }
+      }
+   }
+
+   /**
+    * Components with several runs in a row, gaps between runs, holes and rows of differing
+    * extent.
+    */
+   private static List<RunLengthComponent> createShapes()
+   {
+      List<RunLengthComponent> components = new ArrayList<>();
+
+      // a single pixel at the origin
+      components.add(new RunLengthComponent(0, new int[] { 0, 0, 0 }));
+
+      // a "U" with two runs in each of its upper rows
+      components.add(new RunLengthComponent(1, new int[] {
+            10, 20, 22, 10, 30, 32,
+            11, 20, 22, 11, 30, 32,
+            12, 20, 32 }));
+
+      // a ring with a hole
+      components.add(new RunLengthComponent(5, new int[] {
+            40, 100, 104,
+            41, 100, 100, 41, 104, 104,
+            42, 100, 100, 42, 104, 104,
+            43, 100, 104 }));
+
+      // a comb with many runs in its first row, far from the origin
+      int[] comb = new int[3 * 11];
+      for (int i = 0; i < 10; i++)
+      {
+         comb[3 * i] = 5000;
+         comb[3 * i + 1] = 3000 + 3 * i;
+         comb[3 * i + 2] = 3000 + 3 * i + i % 2;
+      }
+      comb[30] = 5001;
+      comb[31] = 3000;
+      comb[32] = 3028;
+      components.add(new RunLengthComponent(200, comb));
+
+      return components;
+   }
+
+   private static RunLengthComponent createRandom(int sequence, Random rng)
+   {
+      int top = rng.nextInt(20_000);
+      int left = rng.nextInt(20_000);
+      int rows = 1 + rng.nextInt(8);
+
+      List<Integer> runs = new ArrayList<>();
+      for (int row = 0; row < rows; row++)
+      {
+         int col = left + rng.nextInt(4);
+         int numRuns = 1 + rng.nextInt(4);
+         for (int j = 0; j < numRuns; j++)
+         {
+            int len = 1 + rng.nextInt(row == 0 && j == 0 ? 300 : 20);
+            runs.add(Integer.valueOf(top + row));
+            runs.add(Integer.valueOf(col));
+            runs.add(Integer.valueOf(col + len - 1));
+            col += len + 1 + rng.nextInt(20);
+         }
+      }
+
+      return new RunLengthComponent(sequence, runs.stream().mapToInt(Integer::intValue).toArray());
+   }
+
+   private static void assertSequenceEncoding(int sequence, int... expected) throws IOException
+   {
+      RunLengthComponent cc = new RunLengthComponent(sequence, new int[] { 0, 0, 0 });
+      List<RunLengthComponent> components = Collections.singletonList(cc);
+      byte[] data = encode(components);
+
+      int start = HEADER_BYTES + 1;
+      byte[] actual = Arrays.copyOfRange(data, start, start + expected.length);
+      assertArrayEquals("Encoding of [" + sequence + "]", toBytes(expected), actual);
+      assertEquals(0, data[start + expected.length]);
+      assertComponentsEqual(components, decode(data));
+   }
+
+   private static void assertRejected(byte[] data)
+   {
+      try
+      {
+         decode(data);
+         fail("Invalid component set was read.");
+      }
+      catch (IOException ex)
+      {
+         // expected
+      }
+   }
+
+   private static void assertComponentsEqual(List<RunLengthComponent> expected, List<RunLengthComponent> actual)
+   {
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         RunLengthComponent a = expected.get(i);
+         RunLengthComponent b = actual.get(i);
+         assertEquals(a.getSequence(), b.getSequence());
+         assertArrayEquals("Runs of component [" + a.getSequence() + "]", a.getRuns(), b.getRuns());
+         assertEquals(a.getBounds().getLeft(), b.getBounds().getLeft());
+         assertEquals(a.getBounds().getTop(), b.getBounds().getTop());
+         assertEquals(a.getBounds().getRight(), b.getBounds().getRight());
+         assertEquals(a.getBounds().getBottom(), b.getBounds().getBottom());
+         assertEquals(a.getCentroid().getX(), b.getCentroid().getX());
+         assertEquals(a.getCentroid().getY(), b.getCentroid().getY());
+      }
+   }
+
+   /**
+    * @return The header of a component set followed by the supplied bytes.
+    */
+   private static byte[] header(int... bytes)
+   {
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bytes.length);
+      buffer.putInt(0x57434353);
+      buffer.put((byte)1);
+      buffer.put(toBytes(bytes));
+      return buffer.array();
+   }
+
+   private static byte[] toBytes(int... values)
+   {
+      byte[] result = new byte[values.length];
+      for (int i = 0; i < values.length; i++)
+      {
+         result[i] = (byte)values[i];
+      }
+
+      return result;
+   }
+
+   private static byte[] encode(List<RunLengthComponent> components) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ComponentSetFormat.write(Channels.newChannel(out), components);
+      return out.toByteArray();
+   }
+
+   private static List<RunLengthComponent> decode(byte[] data) throws IOException
+   {
+      return ComponentSetFormat.read(Channels.newChannel(new ByteArrayInputStream(data)));
+   }
+
+   /**
+    * A channel that returns at most one byte from each read.
+    */
+   private static class TrickleChannel implements ReadableByteChannel
+   {
+      private final byte[] data;
+      private int pos;
+
+      TrickleChannel(byte[] data)
+      {
+         this.data = data;
+      }
+
+      @Override
+      public int read(ByteBuffer dst)
+      {
+         if (pos == data.length)
+            return -1;
+         if (!dst.hasRemaining())
+            return 0;
+
+         dst.put(data[pos++]);
+         return 1;
+      }
+
+      @Override
+      public boolean isOpen()
+      {
+         return true;
+      }
+
+      @Override
+      public void close()
+      {
+      }
+   }
+}
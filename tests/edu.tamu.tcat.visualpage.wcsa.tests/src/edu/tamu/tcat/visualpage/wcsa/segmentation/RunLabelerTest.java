@@ -0,0 +1,79 @@
+package edu.tamu.tcat.visualpage.wcsa.segmentation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class RunLabelerTest
+{
+   /**
+    * Runs that touch only at a corner belong to the same component.
+    */
+   @Test
+   public void testDiagonalRunsAreConnected()
+   {
+      List<RunLengthComponent> components = label(
+            "#...#",
+            ".#..#",
+            "..#..");
+
+      assertEquals(2, components.size());
+      assertArrayEquals(new int[] { 0, 0, 0, 1, 1, 1, 2, 2, 2 }, components.get(0).getRuns());
+      assertArrayEquals(new int[] { 0, 4, 4, 1, 4, 4 }, components.get(1).getRuns());
+   }
+
+   /**
+    * Two labels that are joined by a later row form a single component, numbered by the
+    * first of them in raster order.
+    */
+   @Test
+   public void testLabelsJoinedByLaterRowAreMerged()
+   {
+      List<RunLengthComponent> components = label(
+            "..#.#..#",
+            "..#.#...",
+            "..###...");
+
+      assertEquals(2, components.size());
+      assertEquals(0, components.get(0).getSequence());
+      assertArrayEquals(new int[] { 0, 2, 2, 0, 4, 4, 1, 2, 2, 1, 4, 4, 2, 2, 4 }, components.get(0).getRuns());
+      assertEquals(1, components.get(1).getSequence());
+      assertArrayEquals(new int[] { 0, 7, 7 }, components.get(1).getRuns());
+   }
+
+   @Test
+   public void testEmptyPageHasNoComponents()
+   {
+      assertEquals(0, label("....", "....").size());
+   }
+
+   private static List<RunLengthComponent> label(String... rows)
+   {
+      RunLabeler labeler = new RunLabeler();
+      for (int y = 0; y < rows.length; y++)
+      {
+         String row = rows[y];
+         int runStart = -1;
+         for (int x = 0; x <= row.length(); x++)
+         {
+            boolean foreground = x < row.length() && row.charAt(x) == '#';
+            if (foreground && runStart < 0)
+            {
+               runStart = x;
+            }
+            else if (!foreground && runStart >= 0)
+            {
+               labeler.addRun(y, runStart, x - 1);
+               runStart = -1;
+            }
+         }
+
+         labeler.endRow();
+      }
+
+      return labeler.build();
+   }
+}